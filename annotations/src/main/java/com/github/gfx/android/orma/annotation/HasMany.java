@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a has-many association, a {@code java.util.List<T>} field filled with the models that refer to the model.
+ * It is not a column, and is filled by {@code selector.includes(Foo_Schema.INSTANCE.field)}, e.g.:
+ *
+ * <pre>
+ * &#64;Table
+ * class Publisher {
+ *     &#64;HasMany("publisher") // refers to Book#publisher
+ *     public List&lt;Book&gt; books;
+ * }
+ * </pre>
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.CLASS)
+public @interface HasMany {
+
+    /**
+     * @return The name of the column in the child model which refers to the model with
+     * {@code SingleAssociation<T>} or a direct association.
+     */
+    String value();
+}
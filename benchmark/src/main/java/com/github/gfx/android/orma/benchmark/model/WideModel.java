@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.benchmark.model;
+
+import com.github.gfx.android.orma.annotation.Column;
+import com.github.gfx.android.orma.annotation.PrimaryKey;
+import com.github.gfx.android.orma.annotation.Table;
+
+import android.support.annotation.Nullable;
+
+import java.util.Date;
+
+// A model with many columns of various types
+@Table
+public class WideModel {
+
+    @PrimaryKey
+    public long id;
+
+    @Column(indexed = true)
+    public String name;
+
+    @Column
+    public String text1;
+
+    @Column
+    public String text2;
+
+    @Column
+    @Nullable
+    public String text3;
+
+    @Column
+    @Nullable
+    public String text4;
+
+    @Column
+    public int int1;
+
+    @Column
+    public int int2;
+
+    @Column
+    public long long1;
+
+    @Column
+    public long long2;
+
+    @Column
+    public double double1;
+
+    @Column
+    public double double2;
+
+    @Column
+    public boolean bool1;
+
+    @Column
+    public boolean bool2;
+
+    @Column
+    public Date date1;
+
+    @Column
+    @Nullable
+    public Date date2;
+
+    @Column
+    @Nullable
+    public byte[] blob;
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.benchmark;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A minimal harness that runs a benchmark case with warmup iterations and collects results as JSON,
+ * which is stable in its key order so that CI can diff results between versions.
+ */
+public class BenchmarkRunner {
+
+    static final int WARMUP_ITERATIONS = 5;
+
+    static final int MEASUREMENT_ITERATIONS = 20;
+
+    public static abstract class Case {
+
+        /**
+         * Called before each iteration, which is not included in the result.
+         */
+        public void setUp() throws Exception {
+        }
+
+        public abstract void run() throws Exception;
+    }
+
+    final JSONObject results = new JSONObject();
+
+    /**
+     * @param operationsPerIteration the number of operations that {@link Case#run()} performs
+     * @param unit                   what an operation is, e.g. {@code "row"} or {@code "statement"}
+     */
+    public void run(String name, int operationsPerIteration, String unit, Case benchmarkCase) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            benchmarkCase.setUp();
+            benchmarkCase.run();
+        }
+
+        long[] elapsed = new long[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            benchmarkCase.setUp();
+            long t0 = System.nanoTime();
+            benchmarkCase.run();
+            elapsed[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(elapsed);
+
+        JSONObject result = new JSONObject();
+        result.put("iterations", MEASUREMENT_ITERATIONS);
+        result.put("operationsPerIteration", operationsPerIteration);
+        result.put("unit", unit);
+        result.put("medianNsPerOp", elapsed[elapsed.length / 2] / operationsPerIteration);
+        result.put("minNsPerOp", elapsed[0] / operationsPerIteration);
+        result.put("maxNsPerOp", elapsed[elapsed.length - 1] / operationsPerIteration);
+        results.put(name, result);
+
+        System.out.println("[benchmark] " + name + ": " + result);
+    }
+
+    public void writeTo(File file) throws IOException, JSONException {
+        JSONObject root = new JSONObject();
+        root.put("java.vm.name", System.getProperty("java.vm.name"));
+        root.put("java.version", System.getProperty("java.version"));
+        root.put("results", results);
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(root.toString(2));
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+    }
+}
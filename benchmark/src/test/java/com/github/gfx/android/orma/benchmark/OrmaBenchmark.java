@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.benchmark;
+
+import com.github.gfx.android.orma.AccessThreadConstraint;
+import com.github.gfx.android.orma.OrmaConnection;
+import com.github.gfx.android.orma.exception.DatabaseAccessOnMainThreadException;
+import com.github.gfx.android.orma.benchmark.model.Owner;
+import com.github.gfx.android.orma.benchmark.model.Task;
+import com.github.gfx.android.orma.benchmark.model.Todo;
+import com.github.gfx.android.orma.benchmark.model.WideModel;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import rx.functions.Action1;
+
+/**
+ * Benchmarks on the JVM with Robolectric's SQLite. Results are written to the file specified by
+ * the {@code orma.benchmark.output} system property.
+ */
+@RunWith(AndroidJUnit4.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class OrmaBenchmark {
+
+    static final int N_ROWS = 1000;
+
+    static final int N_THREADS = 4;
+
+    static BenchmarkRunner runner;
+
+    OrmaDatabase orma;
+
+    long sink;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runner = new BenchmarkRunner();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        String output = System.getProperty("orma.benchmark.output");
+        if (output != null) {
+            runner.writeTo(new File(output));
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        orma = createDatabase();
+    }
+
+    static OrmaDatabase createDatabase() {
+        return OrmaDatabase.builder(InstrumentationRegistry.getTargetContext())
+                .name(null)
+                .trace(false)
+                .tryParsingSql(false)
+                .readOnMainThread(AccessThreadConstraint.NONE)
+                .writeOnMainThread(AccessThreadConstraint.NONE)
+                .build();
+    }
+
+    static List<Todo> createTodos() {
+        List<Todo> todos = new ArrayList<>(N_ROWS);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < N_ROWS; i++) {
+            Todo todo = new Todo();
+            todo.title = "title " + i;
+            todo.content = i % 2 == 0 ? null : "content " + i;
+            todo.done = i % 3 == 0;
+            todo.createdTime = new Date(now + i);
+            todos.add(todo);
+        }
+        return todos;
+    }
+
+    void fillTodos() {
+        orma.deleteFromTodo().execute();
+        orma.prepareInsertIntoTodo().executeAllInBatch(createTodos());
+    }
+
+    void fillWideModels() {
+        List<WideModel> models = new ArrayList<>(N_ROWS);
+        for (int i = 0; i < N_ROWS; i++) {
+            WideModel model = new WideModel();
+            model.name = "name " + i;
+            model.text1 = "text1 " + i;
+            model.text2 = "text2 " + i;
+            model.text3 = i % 2 == 0 ? null : "text3 " + i;
+            model.text4 = "text4 " + i;
+            model.int1 = i;
+            model.int2 = -i;
+            model.long1 = i * 1000L;
+            model.long2 = -i * 1000L;
+            model.double1 = i / 3.0;
+            model.double2 = -i / 3.0;
+            model.bool1 = i % 2 == 0;
+            model.bool2 = i % 3 == 0;
+            model.date1 = new Date(i);
+            model.date2 = i % 2 == 0 ? null : new Date(i);
+            model.blob = new byte[]{(byte) i, (byte) (i >> 8)};
+            models.add(model);
+        }
+        orma.prepareInsertIntoWideModel().executeAll(models);
+    }
+
+    void fillTasks() {
+        List<Owner> owners = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Owner owner = new Owner();
+            owner.name = "owner " + i;
+            owner.id = orma.insertIntoOwner(owner);
+            owners.add(owner);
+        }
+        List<Task> tasks = new ArrayList<>(N_ROWS);
+        for (int i = 0; i < N_ROWS; i++) {
+            Task task = new Task();
+            task.title = "task " + i;
+            task.owner = owners.get(i % owners.size());
+            tasks.add(task);
+        }
+        orma.prepareInsertIntoTask().executeAll(tasks);
+    }
+
+    @Test
+    public void insertExecute() throws Exception {
+        final List<Todo> todos = createTodos();
+        runner.run("Inserter#execute", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void setUp() throws Exception {
+                orma.deleteFromTodo().execute();
+            }
+
+            @Override
+            public void run() throws Exception {
+                orma.transactionSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Todo todo : todos) {
+                            orma.insertIntoTodo(todo);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void insertExecuteAll() throws Exception {
+        final List<Todo> todos = createTodos();
+        runner.run("Inserter#executeAll", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void setUp() throws Exception {
+                orma.deleteFromTodo().execute();
+            }
+
+            @Override
+            public void run() throws Exception {
+                orma.prepareInsertIntoTodo().executeAll(todos);
+            }
+        });
+    }
+
+    @Test
+    public void insertExecuteAllInBatch() throws Exception {
+        final List<Todo> todos = createTodos();
+        runner.run("Inserter#executeAllInBatch", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void setUp() throws Exception {
+                orma.deleteFromTodo().execute();
+            }
+
+            @Override
+            public void run() throws Exception {
+                orma.prepareInsertIntoTodo().executeAllInBatch(todos);
+            }
+        });
+    }
+
+    @Test
+    public void selectToList() throws Exception {
+        fillTodos();
+        runner.run("Selector#toList", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void run() throws Exception {
+                sink += orma.selectFromTodo().orderByCreatedTimeAsc().toList().size();
+            }
+        });
+    }
+
+    @Test
+    public void selectForEach() throws Exception {
+        fillTodos();
+        runner.run("Selector#forEach", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void run() throws Exception {
+                orma.selectFromTodo().orderByCreatedTimeAsc().forEach(new Action1<Todo>() {
+                    @Override
+                    public void call(Todo todo) {
+                        sink += todo.id;
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void selectIterator() throws Exception {
+        fillTodos();
+        runner.run("Selector#iterator", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void run() throws Exception {
+                for (Todo todo : orma.selectFromTodo().orderByCreatedTimeAsc()) {
+                    sink += todo.id;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void selectStreamingIterator() throws Exception {
+        fillTodos();
+        runner.run("Selector#streamingIterator", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void run() throws Exception {
+                Iterator<Todo> iterator = orma.selectFromTodo().orderByCreatedTimeAsc().streamingIterator();
+                while (iterator.hasNext()) {
+                    sink += iterator.next().id;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void selectCount() throws Exception {
+        fillTodos();
+        runner.run("Selector#count", 100, "call", new BenchmarkRunner.Case() {
+            @Override
+            public void run() throws Exception {
+                for (int i = 0; i < 100; i++) {
+                    sink += orma.selectFromTodo().doneEq(false).count();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void newModelFromCursorWithWideModel() throws Exception {
+        fillWideModels();
+        runner.run("Schema#newModelFromCursor(wide)", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void run() throws Exception {
+                sink += orma.selectFromWideModel().toList().size();
+            }
+        });
+    }
+
+    @Test
+    public void newModelFromCursorWithDirectAssociation() throws Exception {
+        fillTasks();
+        runner.run("Schema#newModelFromCursor(direct association)", N_ROWS, "row", new BenchmarkRunner.Case() {
+            @Override
+            public void run() throws Exception {
+                sink += orma.selectFromTask().toList().size();
+            }
+        });
+    }
+
+    @Test
+    public void update() throws Exception {
+        fillTodos();
+        runner.run("Updater#execute(" + N_ROWS + " rows)", 1, "statement", new BenchmarkRunner.Case() {
+            boolean done;
+
+            @Override
+            public void run() throws Exception {
+                done = !done;
+                sink += orma.updateTodo().done(done).execute();
+            }
+        });
+    }
+
+    @Test
+    public void delete() throws Exception {
+        runner.run("Deleter#execute(" + N_ROWS + " rows)", 1, "statement", new BenchmarkRunner.Case() {
+            @Override
+            public void setUp() throws Exception {
+                fillTodos();
+            }
+
+            @Override
+            public void run() throws Exception {
+                sink += orma.deleteFromTodo().execute();
+            }
+        });
+    }
+
+    interface DatabaseAccess {
+
+        SQLiteDatabase get();
+    }
+
+    /**
+     * A copy of the former {@link OrmaConnection#getReadableDatabase()}, which is synchronized and asks {@link Looper}
+     * whether it is on the main thread for each call.
+     */
+    static class SynchronizedDatabaseAccess implements DatabaseAccess {
+
+        final SQLiteDatabase db;
+
+        final AccessThreadConstraint readOnMainThread;
+
+        boolean migrationCompleted = true;
+
+        SynchronizedDatabaseAccess(SQLiteDatabase db, AccessThreadConstraint readOnMainThread) {
+            this.db = db;
+            this.readOnMainThread = readOnMainThread;
+        }
+
+        @Override
+        public synchronized SQLiteDatabase get() {
+            if (readOnMainThread != AccessThreadConstraint.NONE) {
+                if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
+                    if (readOnMainThread == AccessThreadConstraint.FATAL) {
+                        throw new DatabaseAccessOnMainThreadException("Reading things must run in background");
+                    } else {
+                        Log.w("OrmaBenchmark", "Reading things must run in background");
+                    }
+                }
+            }
+            if (!migrationCompleted) {
+                throw new AssertionError("never reached");
+            }
+            return db;
+        }
+    }
+
+    @Test
+    public void getReadableDatabase() throws Exception {
+        // the check of the access thread is enabled as in debug builds
+        final OrmaConnection conn = OrmaDatabase.builder(InstrumentationRegistry.getTargetContext())
+                .name(null)
+                .trace(false)
+                .readOnMainThread(AccessThreadConstraint.WARNING)
+                .build()
+                .getConnection();
+
+        runDatabaseAccess("synchronized", new SynchronizedDatabaseAccess(conn.getWritableDatabase(),
+                AccessThreadConstraint.WARNING));
+        runDatabaseAccess("lock-free", new DatabaseAccess() {
+            @Override
+            public SQLiteDatabase get() {
+                return conn.getReadableDatabase();
+            }
+        });
+    }
+
+    void runDatabaseAccess(String variant, final DatabaseAccess access) throws Exception {
+        final int nCalls = 50_000;
+        runner.run("OrmaConnection#getReadableDatabase(" + N_THREADS + " threads, " + variant + ")",
+                N_THREADS * nCalls, "call", new BenchmarkRunner.Case() {
+                    @Override
+                    public void run() throws Exception {
+                        List<Thread> threads = new ArrayList<>();
+                        for (int i = 0; i < N_THREADS; i++) {
+                            threads.add(new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    for (int j = 0; j < nCalls; j++) {
+                                        if (access.get() == null) {
+                                            throw new AssertionError("never reached");
+                                        }
+                                    }
+                                }
+                            }));
+                        }
+                        for (Thread thread : threads) {
+                            thread.start();
+                        }
+                        for (Thread thread : threads) {
+                            thread.join();
+                        }
+                    }
+                });
+    }
+}
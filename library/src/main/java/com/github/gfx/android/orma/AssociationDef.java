@@ -16,6 +16,8 @@
 
 package com.github.gfx.android.orma;
 
+import android.support.annotation.NonNull;
+
 import java.lang.reflect.Type;
 
 public abstract class AssociationDef<Model, T, S extends Schema<T>> extends ColumnDef<Model, T> {
@@ -26,4 +28,18 @@ public abstract class AssociationDef<Model, T, S extends Schema<T>> extends Colu
         super(schema, name, type, storageType, flags);
         this.associationSchema = associationSchema;
     }
+
+    /**
+     * @return The foreign key column followed by the associated model's columns,
+     * which are the same layout as {@link Schema#getDefaultResultColumns()}.
+     */
+    @NonNull
+    @Override
+    public String[] getResultColumns() {
+        String[] associatedColumns = associationSchema.getDefaultResultColumns();
+        String[] columns = new String[associatedColumns.length + 1];
+        columns[0] = getQualifiedName();
+        System.arraycopy(associatedColumns, 0, columns, 1, associatedColumns.length);
+        return columns;
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records the column values of a model when it is loaded from or written to the database, so that
+ * {@link Relation#update(Object)} writes only the changed columns. To enable it, declare a field of this type:
+ *
+ * <pre>
+ * &#64;Table
+ * public class Todo {
+ *     &#64;PrimaryKey(auto = true)
+ *     public long id;
+ *
+ *     &#64;Column
+ *     public boolean done;
+ *
+ *     public final ChangeTracker changeTracker = new ChangeTracker();
+ * }
+ * </pre>
+ *
+ * Changes are detected by comparing the serialized values, so a {@code byte[]} column must be replaced with
+ * a new array, not modified in place.
+ *
+ * The values are recorded when a model is loaded, and after it is inserted, upserted or updated by
+ * {@link Relation#update(Object)}, even in a transaction that is rolled back later.
+ */
+public class ChangeTracker {
+
+    // serialized values indexed by the position in Schema#getColumns(), or null if not loaded
+    @Nullable
+    Object[] values;
+
+    /**
+     * Records the current values of the model, which is called when it is loaded from or written to the database.
+     * Call it after writing the model in other ways, e.g. by {@link Updater}.
+     *
+     * @param schema The schema of the model
+     * @param model  The model that has this tracker
+     */
+    public <Model> void reset(@NonNull Schema<Model> schema, @NonNull Model model) {
+        List<ColumnDef<Model, ?>> columns = schema.getColumns();
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getSerialized(columns.get(i), model);
+        }
+        this.values = values;
+    }
+
+    /**
+     * @return {@code true} if the model is loaded from or written to the database
+     */
+    public boolean isTracking() {
+        return values != null;
+    }
+
+    /**
+     * @param schema The schema of the model
+     * @param model  The model that has this tracker
+     * @return The columns changed since the model is loaded, or all the columns if it is not loaded yet
+     */
+    @NonNull
+    public <Model> List<ColumnDef<Model, ?>> getChangedColumns(@NonNull Schema<Model> schema, @NonNull Model model) {
+        List<ColumnDef<Model, ?>> columns = schema.getColumns();
+        if (values == null) {
+            return columns;
+        }
+        List<ColumnDef<Model, ?>> changedColumns = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnDef<Model, ?> column = columns.get(i);
+            if (!valueEquals(values[i], getSerialized(column, model))) {
+                changedColumns.add(column);
+            }
+        }
+        return changedColumns;
+    }
+
+    /**
+     * Forgets the recorded values, which makes all the columns changed.
+     */
+    public void clear() {
+        values = null;
+    }
+
+    /**
+     * Records the values of the model written to the database, if it declares a {@link ChangeTracker}.
+     */
+    static <Model> void onWritten(@NonNull Schema<Model> schema, @NonNull Model model) {
+        ChangeTracker tracker = schema.getChangeTracker(model);
+        if (tracker != null) {
+            tracker.reset(schema, model);
+        }
+    }
+
+    @Nullable
+    static <Model> Object getSerialized(ColumnDef<Model, ?> column, Model model) {
+        // associations are serialized into their ids, which requires non-null values
+        return column.get(model) != null ? column.getSerialized(model) : null;
+    }
+
+    static boolean valueEquals(@Nullable Object a, @Nullable Object b) {
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.github.gfx.android.orma;
 
+import android.database.Cursor;
 import android.support.annotation.NonNull;
 
 import java.lang.reflect.Type;
@@ -95,6 +96,24 @@ public abstract class ColumnDef<Model, T> {
 
     public abstract Object getSerialized(@NonNull Model model);
 
+    /**
+     * Reads the value of the column from {@code cursor}, whose columns are laid out by {@link #getResultColumns()}.
+     *
+     * @param conn   Used to retrieve instances that depends on a connection
+     * @param cursor A cursor to read the value from
+     * @param index  The index of the first column in {@link #getResultColumns()}
+     * @return The deserialized value
+     */
+    public abstract T getFromCursor(@NonNull OrmaConnection conn, @NonNull Cursor cursor, int index);
+
+    /**
+     * @return Result columns to read the value by {@link #getFromCursor(OrmaConnection, Cursor, int)}
+     */
+    @NonNull
+    public String[] getResultColumns() {
+        return new String[]{getQualifiedName()};
+    }
+
     public OrderSpec<Model> orderInAscending() {
         return new OrderSpec<>(this, OrderSpec.ASC);
     }
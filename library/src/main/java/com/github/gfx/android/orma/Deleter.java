@@ -20,6 +20,8 @@ import com.github.gfx.android.orma.internal.OrmaConditionBase;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
 
+import java.util.List;
+
 import rx.Single;
 import rx.SingleSubscriber;
 
@@ -34,10 +36,27 @@ public abstract class Deleter<Model, D extends Deleter<Model, ?>> extends OrmaCo
     }
 
     /**
+     * A condition with {@code IN (...)} of more than {@link Inserter#MAX_VARIABLE_NUMBER} values is run in chunks
+     * in a transaction, or with the values embedded if it is {@code NOT IN} or joined by {@code or()}.
+     *
      * @return Number of rows deleted.
      */
     public int execute() {
-        return conn.delete(getSchema(), getWhereClause(), getBindArgs());
+        final List<WhereChunk> chunks = getWhereChunks(0, true);
+        if (chunks.size() == 1) {
+            return conn.delete(getSchema(), chunks.get(0).whereClause, chunks.get(0).bindArgs);
+        }
+
+        final int[] deletedRows = {0};
+        conn.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                for (WhereChunk chunk : chunks) {
+                    deletedRows[0] += conn.delete(getSchema(), chunk.whereClause, chunk.bindArgs);
+                }
+            }
+        });
+        return deletedRows[0];
     }
 
     @CheckResult
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Represents a has-many association declared by {@code @HasMany}, which is loaded by
+ * {@link Selector#includes(HasManyDef)}.
+ *
+ * @param <Model> The model that has the children
+ * @param <Child> The model that refers to {@code Model}
+ */
+public abstract class HasManyDef<Model, Child> {
+
+    public final Schema<Model> schema;
+
+    public final String name;
+
+    public HasManyDef(Schema<Model> schema, String name) {
+        this.schema = schema;
+        this.name = name;
+    }
+
+    /**
+     * @return The schema of the children. It is resolved lazily to avoid circular initialization of schemas.
+     */
+    @NonNull
+    public abstract Schema<Child> getChildSchema();
+
+    /**
+     * @return The column in the children which refers to {@code Model}
+     */
+    @NonNull
+    public abstract ColumnDef<Child, ?> getForeignKey();
+
+    public abstract void set(@NonNull Model model, @NonNull List<Child> children);
+
+    @Override
+    public String toString() {
+        return schema.getModelClass().getSimpleName() + '#' + name;
+    }
+}
@@ -19,36 +19,51 @@ import com.github.gfx.android.orma.annotation.OnConflict;
 
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.support.annotation.CheckResult;
+import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import rx.Observable;
 import rx.Single;
 import rx.SingleSubscriber;
 import rx.Subscriber;
+import rx.functions.Action1;
 
 /**
- * Represents a prepared statement to insert models in batch.
+ * Represents a prepared statement to insert models in batch. The statement is cached in
+ * {@link OrmaConnection#getStatementCache()}.
  */
 public class Inserter<Model> {
 
+    // SQLITE_MAX_VARIABLE_NUMBER
+    static final int MAX_VARIABLE_NUMBER = 999;
+
+    // SQLITE_MAX_COMPOUND_SELECT, which limits the number of rows in VALUES before SQLite 3.8.8
+    static final int MAX_COMPOUND_SELECT = 500;
+
     final OrmaConnection conn;
 
     final Schema<Model> schema;
 
-    final boolean withoutAutoId;
+    final int onConflictAlgorithm;
 
-    final SQLiteStatement statement;
+    final boolean withoutAutoId;
 
     final String sql;
 
     public Inserter(OrmaConnection conn, Schema<Model> schema, @OnConflict int onConflictAlgorithm, boolean withoutAutoId) {
-        SQLiteDatabase db = conn.getWritableDatabase();
         this.conn = conn;
         this.schema = schema;
+        this.onConflictAlgorithm = onConflictAlgorithm;
         this.withoutAutoId = withoutAutoId;
         sql = schema.getInsertStatement(onConflictAlgorithm, withoutAutoId);
-        statement = db.compileStatement(sql);
     }
 
     public Inserter(OrmaConnection conn, Schema<Model> schema) {
@@ -66,8 +81,21 @@ public class Inserter<Model> {
         if (conn.trace) {
             conn.trace(sql, schema.convertToArgs(conn, model, withoutAutoId));
         }
-        schema.bindArgs(conn, statement, model, withoutAutoId);
-        return statement.executeInsert();
+        SQLiteDatabase db = conn.getWritableDatabase();
+        SQLiteStatement statement = conn.acquireStatement(db, sql);
+        try {
+            schema.bindArgs(conn, statement, model, withoutAutoId);
+            long t0 = conn.startQuery();
+            long rowId = statement.executeInsert();
+            if (conn.queryListeners.length != 0) {
+                conn.endQuery(sql, countPlaceholders(sql), t0, 1);
+            }
+            conn.invalidationTracker.notifyChanged(schema);
+            ChangeTracker.onWritten(schema, model);
+            return rowId;
+        } finally {
+            conn.releaseStatement(sql, statement);
+        }
     }
 
     /**
@@ -78,9 +106,243 @@ public class Inserter<Model> {
         return execute(modelFactory.call());
     }
 
+    /**
+     * Inserts {@code models} in a transaction. If the current thread is already in a transaction, they are inserted
+     * in it.
+     *
+     * @param models model objects to insert
+     */
     public void executeAll(@NonNull Iterable<Model> models) {
-        for (Model model : models) {
-            execute(model);
+        executeAll(models, 0);
+    }
+
+    /**
+     * Inserts {@code models} in transactions, committing every {@code rowsPerTransaction} rows.
+     * If the current thread is already in a transaction, they are inserted in it and {@code rowsPerTransaction}
+     * is ignored.
+     *
+     * @param models             model objects to insert
+     * @param rowsPerTransaction The number of rows to commit at once, or {@code 0} to insert all the rows in a
+     *                           transaction
+     */
+    public void executeAll(@NonNull Iterable<Model> models, @IntRange(from = 0) int rowsPerTransaction) {
+        executeAllInTransaction(models, rowsPerTransaction, null);
+    }
+
+    /**
+     * @param onInserted Called with the row ids after the transaction that inserted them is committed, or just after
+     *                   each row is inserted if the current thread is already in a transaction
+     */
+    void executeAllInTransaction(@NonNull Iterable<Model> models, int rowsPerTransaction,
+            @Nullable Action1<Long> onInserted) {
+        SQLiteDatabase db = conn.getWritableDatabase();
+        if (db.inTransaction()) {
+            for (Model model : models) {
+                long rowId = execute(model);
+                if (onInserted != null) {
+                    onInserted.call(rowId);
+                }
+            }
+            return;
+        }
+
+        // row ids are delivered after they are committed, not to call back while holding the lock of the database
+        List<Long> insertedRowIds = onInserted != null ? new ArrayList<Long>() : null;
+        int rows = 0;
+        boolean inTransaction = false;
+        boolean successful = false;
+        long t0 = 0;
+        long t1 = 0;
+        try {
+            for (Model model : models) {
+                if (!inTransaction) {
+                    conn.trace("begin transaction", null);
+                    t0 = conn.startQuery();
+                    conn.beginTransaction(db);
+                    t1 = conn.startQuery();
+                    inTransaction = true;
+                }
+                long rowId = execute(model);
+                if (insertedRowIds != null) {
+                    insertedRowIds.add(rowId);
+                }
+                if (rowsPerTransaction > 0 && ++rows == rowsPerTransaction) {
+                    rows = 0;
+                    db.setTransactionSuccessful();
+                    inTransaction = false;
+                    conn.endTransaction(db, true);
+                    conn.trace("end transaction", null);
+                    conn.endTransactionQuery("transaction", t0, t1);
+                    deliver(insertedRowIds, onInserted);
+                }
+            }
+            if (inTransaction) {
+                db.setTransactionSuccessful();
+            }
+            successful = true;
+        } finally {
+            if (inTransaction) {
+                conn.endTransaction(db, successful);
+                conn.trace("end transaction", null);
+                conn.endTransactionQuery("transaction", t0, t1);
+            }
+        }
+        deliver(insertedRowIds, onInserted);
+    }
+
+    static void deliver(@Nullable List<Long> rowIds, @Nullable Action1<Long> onInserted) {
+        if (rowIds == null || onInserted == null) {
+            return;
+        }
+        for (Long rowId : rowIds) {
+            onInserted.call(rowId);
+        }
+        rowIds.clear();
+    }
+
+    /**
+     * <p>Inserts {@code models} with multi-row {@code INSERT} statements, i.e. {@code INSERT INTO t (...) VALUES (?,..),(?,..),...},
+     * which binds as many rows as {@code SQLITE_MAX_VARIABLE_NUMBER} allows in a statement.</p>
+     *
+     * <p>It falls back to {@link #execute(Object)} for each model on Android 4.0 (SQLite 3.7.4), which does not support
+     * multi-row {@code VALUES}, or with {@link OnConflict#IGNORE} and {@link OnConflict#REPLACE}, where row ids are not
+     * predictable because rows may be skipped or deleted in a statement. Unless the row ids are given by
+     * an {@code INTEGER} primary key, it also falls back if the table has triggers, which may insert rows
+     * into the table in the middle of a statement, or if the max row id is so large that SQLite may pick row ids
+     * at random; otherwise the row ids of a statement are consecutive.</p>
+     *
+     * <p>Statements are executed in a transaction unless the current thread is already in a transaction.</p>
+     *
+     * @param models model objects to insert
+     * @return The inserted row ids in the order of {@code models}
+     */
+    @NonNull
+    public long[] executeAllInBatch(@NonNull final Collection<Model> models) {
+        SQLiteDatabase db = conn.getWritableDatabase();
+        if (db.inTransaction()) {
+            return executeAllInBatchWithoutTransaction(models);
+        }
+        final long[][] rowIds = new long[1][];
+        conn.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                rowIds[0] = executeAllInBatchWithoutTransaction(models);
+            }
+        });
+        return rowIds[0];
+    }
+
+    long[] executeAllInBatchWithoutTransaction(@NonNull Collection<Model> models) {
+        long[] rowIds = new long[models.size()];
+
+        if (!canInsertMultipleRows() || !(hasExplicitRowId() || hasConsecutiveRowIds(models.size()))) {
+            int i = 0;
+            for (Model model : models) {
+                rowIds[i++] = execute(model);
+            }
+            return rowIds;
+        }
+
+        String valuesTerm = sql.substring(sql.lastIndexOf(" VALUES ") + " VALUES ".length());
+        int numberOfColumns = countPlaceholders(valuesTerm);
+        int rowsPerStatement = Math.max(1, Math.min(MAX_VARIABLE_NUMBER / numberOfColumns, MAX_COMPOUND_SELECT));
+
+        List<Model> list = models instanceof List ? (List<Model>) models : new ArrayList<>(models);
+        int i = 0;
+        while (i < list.size()) {
+            // the rest is split into powers of two, so that the statement cache holds a few SQL for them
+            int remaining = list.size() - i;
+            int size = remaining >= rowsPerStatement ? rowsPerStatement : Integer.highestOneBit(remaining);
+            executeChunk(list.subList(i, i + size), numberOfColumns, valuesTerm, rowIds, i);
+            i += size;
+        }
+        return rowIds;
+    }
+
+    boolean canInsertMultipleRows() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && onConflictAlgorithm != OnConflict.IGNORE && onConflictAlgorithm != OnConflict.REPLACE;
+    }
+
+    /**
+     * @return {@code true} if the row ids are the values of the {@code INTEGER PRIMARY KEY} of models
+     */
+    boolean hasExplicitRowId() {
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        return !(withoutAutoId && primaryKey.isAutoValue()) && primaryKey.storageType.equals("INTEGER");
+    }
+
+    /**
+     * SQLite assigns {@code max(rowid) + 1} (or the next value of the sequence with {@code AUTOINCREMENT}) to
+     * a new row, so the row ids of a multi-row statement are consecutive, unless a trigger inserts rows into
+     * the table, or the max row id is reached, after which row ids are picked at random.
+     *
+     * @param rows The number of rows to insert
+     * @return {@code true} if the row ids of {@code rows} rows inserted by statements are consecutive
+     */
+    boolean hasConsecutiveRowIds(int rows) {
+        long triggers = conn.rawQueryForLong("SELECT count(*) FROM sqlite_master WHERE type = 'trigger' AND tbl_name = ?",
+                schema.getTableName());
+        if (triggers != 0) {
+            return false;
+        }
+        long maxRowId = conn.rawQueryForLong("SELECT ifnull(max(_rowid_), 0) FROM " + schema.getEscapedTableName());
+        return maxRowId <= Long.MAX_VALUE - rows;
+    }
+
+    static int countPlaceholders(String valuesTerm) {
+        int n = 0;
+        for (int i = 0; i < valuesTerm.length(); i++) {
+            if (valuesTerm.charAt(i) == '?') {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    void executeChunk(List<Model> chunk, int numberOfColumns, String valuesTerm, long[] rowIds, int index) {
+        StringBuilder sb = new StringBuilder(sql.length() + (valuesTerm.length() + 1) * chunk.size());
+        sb.append(sql);
+        for (int i = 1; i < chunk.size(); i++) {
+            sb.append(',');
+            sb.append(valuesTerm);
+        }
+        String multiRowSql = sb.toString();
+
+        if (conn.trace) {
+            List<Object> args = new ArrayList<>(numberOfColumns * chunk.size());
+            for (Model model : chunk) {
+                Collections.addAll(args, schema.convertToArgs(conn, model, withoutAutoId));
+            }
+            conn.trace(multiRowSql, args.toArray());
+        }
+
+        long lastRowId;
+        SQLiteDatabase db = conn.getWritableDatabase();
+        SQLiteStatement statement = conn.acquireStatement(db, multiRowSql);
+        try {
+            for (int i = 0; i < chunk.size(); i++) {
+                schema.bindArgs(conn, statement, chunk.get(i), withoutAutoId, numberOfColumns * i);
+            }
+            long t0 = conn.startQuery();
+            lastRowId = statement.executeInsert();
+            conn.endQuery(multiRowSql, numberOfColumns * chunk.size(), t0, chunk.size());
+            conn.invalidationTracker.notifyChanged(schema);
+        } finally {
+            conn.releaseStatement(multiRowSql, statement);
+        }
+
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        boolean explicitRowId = hasExplicitRowId();
+        for (int i = 0; i < chunk.size(); i++) {
+            ChangeTracker.onWritten(schema, chunk.get(i));
+            if (explicitRowId) {
+                // the INTEGER PRIMARY KEY is an alias for the rowid
+                rowIds[index + i] = ((Number) primaryKey.getSerialized(chunk.get(i))).longValue();
+            } else {
+                // consecutive, as checked by hasConsecutiveRowIds()
+                rowIds[index + i] = lastRowId - (chunk.size() - 1 - i);
+            }
         }
     }
 
@@ -122,7 +384,7 @@ public class Inserter<Model> {
     }
 
     /**
-     * {@link Single} wrapper to {@code execute(Model)}
+     * {@link Observable} wrapper to {@code executeAll(Iterable<Model>)}
      *
      * @param models model objects to insert
      * @return An {@link Observable} for the last inserted row ids
@@ -130,13 +392,32 @@ public class Inserter<Model> {
     @CheckResult
     @NonNull
     public Observable<Long> executeAllAsObservable(@NonNull final Iterable<Model> models) {
+        return executeAllAsObservable(models, 0);
+    }
+
+    /**
+     * {@link Observable} wrapper to {@code executeAll(Iterable<Model>, int)}. Row ids are emitted after each
+     * transaction is committed, so subscribers do not run while the transaction holds the lock of the database,
+     * unless the current thread is already in a transaction.
+     *
+     * @param models             model objects to insert
+     * @param rowsPerTransaction The number of rows to commit at once, or {@code 0} to insert all the rows in a
+     *                           transaction
+     * @return An {@link Observable} for the last inserted row ids
+     */
+    @CheckResult
+    @NonNull
+    public Observable<Long> executeAllAsObservable(@NonNull final Iterable<Model> models,
+            @IntRange(from = 0) final int rowsPerTransaction) {
         return Observable.create(new Observable.OnSubscribe<Long>() {
             @Override
-            public void call(Subscriber<? super Long> subscriber) {
-                for (Model model : models) {
-                    long rowId = execute(model);
-                    subscriber.onNext(rowId);
-                }
+            public void call(final Subscriber<? super Long> subscriber) {
+                executeAllInTransaction(models, rowsPerTransaction, new Action1<Long>() {
+                    @Override
+                    public void call(Long rowId) {
+                        subscriber.onNext(rowId);
+                    }
+                });
                 subscriber.onCompleted();
             }
         });
@@ -17,6 +17,10 @@ package com.github.gfx.android.orma;
 
 import com.github.gfx.android.orma.exception.DatabaseAccessOnMainThreadException;
 import com.github.gfx.android.orma.exception.NoValueException;
+import com.github.gfx.android.orma.internal.InvalidationTracker;
+import com.github.gfx.android.orma.internal.OrmaConditionBase;
+import com.github.gfx.android.orma.internal.QueryShapes;
+import com.github.gfx.android.orma.internal.StatementCache;
 import com.github.gfx.android.orma.migration.MigrationEngine;
 import com.github.gfx.android.orma.migration.sqliteparser.SQLiteParserUtils;
 
@@ -26,7 +30,10 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteQuery;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
@@ -38,10 +45,16 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rx.Completable;
 import rx.CompletableSubscriber;
+import rx.Observable;
 
 /**
  * Low-level interface to Orma database connection.
@@ -50,6 +63,22 @@ public class OrmaConnection {
 
     static final String TAG = "Orma";
 
+    /**
+     * Whether the current thread is the main thread. A thread never changes whether it is the main thread or not,
+     * so it is evaluated once per thread.
+     */
+    static final ThreadLocal<Boolean> onMainThread = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Looper.getMainLooper().getThread() == Thread.currentThread();
+        }
+    };
+
+    /**
+     * Whether a class in stack traces implements {@link DatabaseHandle}, i.e. is the generated {@code OrmaDatabase}.
+     */
+    static final ConcurrentHashMap<String, Boolean> databaseHandleClasses = new ConcurrentHashMap<>();
+
     final String name;
 
     /**
@@ -73,7 +102,45 @@ public class OrmaConnection {
 
     final AccessThreadConstraint writeOnMainThread;
 
-    boolean migrationCompleted = false;
+    final StatementCache statementCache;
+
+    final int readerPoolSize;
+
+    @Nullable
+    final QueryPlanInspector queryPlanInspector;
+
+    final QueryListener[] queryListeners;
+
+    final int writeQueueMaxBatchSize;
+
+    final long writeQueueMaxBatchMillis;
+
+    final long transactionCallSiteThresholdNanos;
+
+    final Context context;
+
+    final AtomicInteger readerIndex = new AtomicInteger();
+
+    final InvalidationTracker invalidationTracker = new InvalidationTracker();
+
+    final QueryShapes queryShapes = new QueryShapes(QueryShapes.DEFAULT_MAX_SIZE);
+
+    // the max hold and wait times of transactions by their names, to capture the call sites of the longest ones
+    final ConcurrentHashMap<String, long[]> transactionMaxNanos = new ConcurrentHashMap<>();
+
+    // "UPDATE table SET ..." clauses built by Updater, keyed by tables and the sets of assigned columns
+    final ConcurrentHashMap<String, ConcurrentHashMap<BitSet, String>> updateStatements = new ConcurrentHashMap<>();
+
+    /**
+     * Read-only connections, opened after migration. It is safely published by {@link #migrationCompleted}.
+     */
+    SQLiteDatabase[] readers = new SQLiteDatabase[0];
+
+    volatile boolean migrationCompleted = false;
+
+    volatile String sqliteVersion;
+
+    volatile WriteQueue writeQueue;
 
     public OrmaConnection(@NonNull OrmaDatabaseBuilderBase<?> builder, List<Schema<?>> schemas) {
         this.name = builder.name;
@@ -87,6 +154,14 @@ public class OrmaConnection {
         this.trace = builder.trace;
         this.readOnMainThread = builder.readOnMainThread;
         this.writeOnMainThread = builder.writeOnMainThread;
+        this.statementCache = new StatementCache(builder.statementCacheSize);
+        this.readerPoolSize = builder.readerPoolSize;
+        this.queryPlanInspector = builder.queryPlanInspector;
+        this.queryListeners = builder.queryListeners.toArray(new QueryListener[builder.queryListeners.size()]);
+        this.writeQueueMaxBatchSize = builder.writeQueueMaxBatchSize;
+        this.writeQueueMaxBatchMillis = builder.writeQueueMaxBatchMillis;
+        this.transactionCallSiteThresholdNanos = TimeUnit.MILLISECONDS.toNanos(builder.transactionCallSiteThresholdMillis);
+        this.context = builder.context;
         this.db = openDatabase(builder.context);
 
         checkSchemas(schemas);
@@ -126,40 +201,170 @@ public class OrmaConnection {
         return schemas;
     }
 
-    public synchronized SQLiteDatabase getWritableDatabase() {
-        if (writeOnMainThread != AccessThreadConstraint.NONE) {
-            if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
-                if (writeOnMainThread == AccessThreadConstraint.FATAL) {
-                    throw new DatabaseAccessOnMainThreadException("Writing things must run in background");
-                } else {
-                    Log.w(TAG, "Writing things must run in background");
-                }
+    @NonNull
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * Checks out a prepared statement from the statement cache.
+     * The statement must be returned by {@link #releaseStatement(String, SQLiteStatement)}.
+     *
+     * @param db A database to compile the statement with
+     * @param sql A SQL statement
+     * @return A prepared statement
+     */
+    @NonNull
+    public SQLiteStatement acquireStatement(@NonNull SQLiteDatabase db, @NonNull String sql) {
+        return statementCache.acquire(db, sql);
+    }
+
+    public void releaseStatement(@NonNull String sql, @NonNull SQLiteStatement statement) {
+        statementCache.release(sql, statement);
+    }
+
+    @Nullable
+    public QueryPlanInspector getQueryPlanInspector() {
+        return queryPlanInspector;
+    }
+
+    @NonNull
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+
+    /**
+     * Notifies the tables modified by this connection: {@link Inserter}, {@link Updater}, {@link Deleter}
+     * and {@link #execSQL(String, Object...)}, which is assumed to modify all the tables.
+     * Modifications in a transaction are coalesced into one event emitted after the transaction is committed.
+     * Events are emitted in the thread that modifies the database.
+     *
+     * @return An {@link Observable} that yields a set of the modified tables
+     */
+    @NonNull
+    public Observable<Set<Schema<?>>> changesAsObservable() {
+        return invalidationTracker.asObservable();
+    }
+
+    /**
+     * @return The version of the SQLite library, e.g. {@code "3.24.0"}
+     */
+    @NonNull
+    public String getSQLiteVersion() {
+        String version = sqliteVersion;
+        if (version == null) {
+            version = DatabaseUtils.stringForQuery(getWritableDatabase(), "SELECT sqlite_version()", null);
+            sqliteVersion = version;
+        }
+        return version;
+    }
+
+    /**
+     * @return {@code true} if SQLite supports {@code INSERT ... ON CONFLICT DO UPDATE}, which is added in 3.24.0
+     */
+    public boolean supportsUpsert() {
+        return compareVersions(getSQLiteVersion(), "3.24.0") >= 0;
+    }
+
+    static int compareVersions(String a, String b) {
+        String[] as = a.split("\\.");
+        String[] bs = b.split("\\.");
+        for (int i = 0; i < Math.max(as.length, bs.length); i++) {
+            int x = i < as.length ? parseVersionComponent(as[i]) : 0;
+            int y = i < bs.length ? parseVersionComponent(bs[i]) : 0;
+            if (x != y) {
+                return x < y ? -1 : 1;
             }
         }
-        if (!migrationCompleted) {
-            onMigrate(db);
-            migrationCompleted = true;
+        return 0;
+    }
+
+    private static int parseVersionComponent(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return 0;
         }
-        return db;
     }
 
-    public synchronized SQLiteDatabase getReadableDatabase() {
-        if (readOnMainThread != AccessThreadConstraint.NONE) {
-            if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
-                if (readOnMainThread == AccessThreadConstraint.FATAL) {
-                    throw new DatabaseAccessOnMainThreadException("Reading things must run in background");
+    /**
+     * Stops the writer thread of the {@link WriteQueue}, and closes the cached statements, the read-only connections
+     * and the database. The connection must not be used after closed.
+     */
+    public void close() {
+        // outside of the lock, because the running batch may need it to finish
+        WriteQueue queue = writeQueue;
+        if (queue != null) {
+            queue.close();
+        }
+        closeDatabases();
+    }
+
+    synchronized void closeDatabases() {
+        statementCache.clear();
+        for (SQLiteDatabase reader : readers) {
+            reader.close();
+        }
+        readers = new SQLiteDatabase[0];
+        db.close();
+    }
+
+    public SQLiteDatabase getWritableDatabase() {
+        checkAccessThread(writeOnMainThread, "Writing things must run in background");
+        return getMigratedDatabase();
+    }
+
+    /**
+     * @return The writable database if the current thread is in a transaction or the reader pool is disabled,
+     * otherwise one of the read-only connections in the reader pool.
+     */
+    public SQLiteDatabase getReadableDatabase() {
+        checkAccessThread(readOnMainThread, "Reading things must run in background");
+        SQLiteDatabase db = getMigratedDatabase();
+        SQLiteDatabase[] readers = this.readers;
+        if (readers.length == 0 || db.inTransaction()) {
+            return db;
+        }
+        return readers[(readerIndex.getAndIncrement() & Integer.MAX_VALUE) % readers.length];
+    }
+
+    private void checkAccessThread(AccessThreadConstraint constraint, String message) {
+        if (constraint != AccessThreadConstraint.NONE) {
+            if (onMainThread.get()) {
+                if (constraint == AccessThreadConstraint.FATAL) {
+                    throw new DatabaseAccessOnMainThreadException(message);
                 } else {
-                    Log.w(TAG, "Reading things must run in background");
+                    Log.w(TAG, message);
                 }
             }
         }
+    }
+
+    private SQLiteDatabase getMigratedDatabase() {
         if (!migrationCompleted) {
-            onMigrate(db);
-            migrationCompleted = true;
+            synchronized (this) {
+                if (!migrationCompleted) {
+                    onMigrate(db);
+                    readers = openReaders();
+                    migrationCompleted = true;
+                }
+            }
         }
         return db;
     }
 
+    private SQLiteDatabase[] openReaders() {
+        if (readerPoolSize == 0 || name == null || !(wal && isRunningOnJellyBean())) {
+            return new SQLiteDatabase[0];
+        }
+        String path = context.getDatabasePath(name).getPath();
+        SQLiteDatabase[] readers = new SQLiteDatabase[readerPoolSize];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+        }
+        return readers;
+    }
+
     @NonNull
     public <T> T createModel(Schema<T> schema, ModelFactory<T> factory) {
         T model = factory.call();
@@ -168,13 +373,13 @@ public class OrmaConnection {
 
         ColumnDef<T, ?> primaryKey = schema.getPrimaryKey();
         String whereClause = primaryKey.getQualifiedName() + " = ?";
-        String primaryKeyValue;
+        Object primaryKeyValue;
         if (primaryKey.isAutoValue()) {
-            primaryKeyValue = Long.toString(id);
+            primaryKeyValue = id;
         } else {
-            primaryKeyValue = String.valueOf(primaryKey.getSerialized(model));
+            primaryKeyValue = primaryKey.getSerialized(model);
         }
-        String[] whereArgs = {primaryKeyValue};
+        Object[] whereArgs = {primaryKeyValue};
         T createdModel = querySingle(schema, schema.getDefaultResultColumns(), whereClause, whereArgs, null, null, null, 0);
         if (createdModel == null) {
             throw new NoValueException("Can't retrieve the created model for " + model + " (rowid=" + id + ")");
@@ -187,55 +392,175 @@ public class OrmaConnection {
         if (trace) {
             traceUpdateQuery(schema, values, whereClause, whereArgs);
         }
-        return db.update(schema.getEscapedTableName(), values, whereClause, whereArgs);
+        long t0 = startQuery();
+        int updatedRows = db.update(schema.getEscapedTableName(), values, whereClause, whereArgs);
+        if (queryListeners.length != 0) {
+            endQuery(buildUpdateQuery(schema, values, whereClause), values.size() + countArgs(whereArgs), t0,
+                    updatedRows);
+        }
+        invalidationTracker.notifyChanged(schema);
+        return updatedRows;
     }
 
     private void traceUpdateQuery(Schema<?> schema, ContentValues values, String whereClause, String[] whereArgs) {
-        // copied from SQLiteDatabase#updateWithOnConflict()
-        StringBuilder sql = new StringBuilder();
-        sql.append("UPDATE ");
-        sql.append(schema.getEscapedTableName());
-        sql.append(" SET ");
-
         // move all bind args to one array
         int setValuesSize = values.size();
         int bindArgsSize = (whereArgs == null) ? setValuesSize : (setValuesSize + whereArgs.length);
         Object[] bindArgs = new Object[bindArgsSize];
         int i = 0;
         for (String colName : values.keySet()) {
-            sql.append((i > 0) ? "," : "");
-            sql.append(colName);
             bindArgs[i++] = values.get(colName);
-            sql.append("=?");
         }
         if (whereArgs != null) {
             for (i = setValuesSize; i < bindArgsSize; i++) {
                 bindArgs[i] = whereArgs[i - setValuesSize];
             }
         }
+
+        trace(buildUpdateQuery(schema, values, whereClause), bindArgs);
+    }
+
+    private static String buildUpdateQuery(Schema<?> schema, ContentValues values, String whereClause) {
+        // copied from SQLiteDatabase#updateWithOnConflict()
+        StringBuilder sql = new StringBuilder();
+        sql.append("UPDATE ");
+        sql.append(schema.getEscapedTableName());
+        sql.append(" SET ");
+
+        int i = 0;
+        for (String colName : values.keySet()) {
+            sql.append((i++ > 0) ? "," : "");
+            sql.append(colName);
+            sql.append("=?");
+        }
         if (!TextUtils.isEmpty(whereClause)) {
             sql.append(" WHERE ");
             sql.append(whereClause);
         }
-
-        trace(sql.toString(), bindArgs);
+        return sql.toString();
     }
 
+    /**
+     * @param sql      A SQL statement
+     * @param bindArgs Values bound to the statement, which are bound as their own types
+     *                 (see {@link OrmaConditionBase#normalizeBindArg(Object)}), not as strings
+     * @return A cursor
+     */
     @NonNull
-    public Cursor rawQuery(@NonNull String sql, String... bindArgs) {
+    public Cursor rawQuery(@NonNull final String sql, @Nullable final Object... bindArgs) {
         trace(sql, bindArgs);
         SQLiteDatabase db = getReadableDatabase();
-        return db.rawQuery(sql, bindArgs);
+        final long t0 = startQuery();
+        if ((bindArgs == null || bindArgs.length == 0) && queryListeners.length == 0) {
+            return db.rawQuery(sql, null);
+        }
+        // SQLiteDatabase#rawQuery() takes only strings, so the arguments are bound to SQLiteQuery directly
+        return db.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable,
+                    SQLiteQuery query) {
+                bindAllArgs(query, 1, bindArgs);
+                if (queryListeners.length != 0) {
+                    return new MeasuredCursor(masterQuery, editTable, query, sql, countArgs(bindArgs), t0);
+                }
+                return new SQLiteCursor(masterQuery, editTable, query);
+            }
+        }, sql, null, null);
+    }
+
+    /**
+     * A cursor that notifies {@link QueryListener}s when it is first filled, where the query is actually executed
+     * and all the rows are counted.
+     */
+    class MeasuredCursor extends SQLiteCursor {
+
+        final String sql;
+
+        final int bindArgCount;
+
+        final long prepareNanos;
+
+        boolean measured = false;
+
+        MeasuredCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query, String sql, int bindArgCount,
+                long startNanos) {
+            super(driver, editTable, query);
+            this.sql = sql;
+            this.bindArgCount = bindArgCount;
+            this.prepareNanos = System.nanoTime() - startNanos;
+        }
+
+        @Override
+        public int getCount() {
+            if (measured) {
+                return super.getCount();
+            }
+            measured = true;
+            // the time between preparing and reading the cursor is not included
+            long t0 = System.nanoTime() - prepareNanos;
+            int count = super.getCount();
+            endQuery(sql, bindArgCount, t0, count);
+            return count;
+        }
     }
 
-    public long rawQueryForLong(@NonNull String sql, String... bindArgs) {
+    public long rawQueryForLong(@NonNull String sql, @Nullable Object... bindArgs) {
         trace(sql, bindArgs);
         SQLiteDatabase db = getReadableDatabase();
-        return DatabaseUtils.longForQuery(db, sql, bindArgs);
+        long t0 = startQuery();
+        long value;
+        if (db != this.db) {
+            // the statement cache is only for the writable database
+            SQLiteStatement statement = db.compileStatement(sql);
+            try {
+                bindAllArgs(statement, 1, bindArgs);
+                value = statement.simpleQueryForLong();
+            } finally {
+                statement.close();
+            }
+        } else {
+            SQLiteStatement statement = acquireStatement(db, sql);
+            try {
+                bindAllArgs(statement, 1, bindArgs);
+                value = statement.simpleQueryForLong();
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        }
+        endQuery(sql, countArgs(bindArgs), t0, 1);
+        return value;
+    }
+
+    /**
+     * Binds values as their own types.
+     *
+     * @param program    A statement or query
+     * @param startIndex The index of the first argument, which starts with 1
+     * @param bindArgs   Values to bind
+     */
+    static void bindAllArgs(@NonNull SQLiteProgram program, int startIndex, @Nullable Object[] bindArgs) {
+        if (bindArgs == null) {
+            return;
+        }
+        for (int i = 0; i < bindArgs.length; i++) {
+            int index = startIndex + i;
+            Object arg = OrmaConditionBase.normalizeBindArg(bindArgs[i]);
+            if (arg == null) {
+                program.bindNull(index);
+            } else if (arg instanceof Long) {
+                program.bindLong(index, (Long) arg);
+            } else if (arg instanceof Double) {
+                program.bindDouble(index, (Double) arg);
+            } else if (arg instanceof byte[]) {
+                program.bindBlob(index, (byte[]) arg);
+            } else {
+                program.bindString(index, (String) arg);
+            }
+        }
     }
 
     @NonNull
-    public Cursor query(Schema<?> schema, String[] columns, String whereClause, String[] bindArgs,
+    public Cursor query(Schema<?> schema, String[] columns, String whereClause, Object[] bindArgs,
             String groupBy, String having, String orderBy, String limit) {
         String sql = SQLiteQueryBuilder.buildQueryString(
                 false, schema.getSelectFromTableClause(), columns, whereClause, groupBy, having, orderBy, limit);
@@ -243,7 +568,7 @@ public class OrmaConnection {
     }
 
     @Nullable
-    public <T> T querySingle(Schema<T> schema, String[] columns, String whereClause, String[] whereArgs, String groupBy,
+    public <T> T querySingle(Schema<T> schema, String[] columns, String whereClause, Object[] whereArgs, String groupBy,
             String having, String orderBy, long offset) {
         SQLiteCursor cursor = (SQLiteCursor) query(schema, columns, whereClause, whereArgs, groupBy, having, orderBy,
                 offset + ",1");
@@ -259,32 +584,42 @@ public class OrmaConnection {
         }
     }
 
-    public int delete(@NonNull Schema<?> schema, @Nullable String whereClause, @Nullable String[] whereArgs) {
+    public int delete(@NonNull Schema<?> schema, @Nullable String whereClause, @Nullable Object[] whereArgs) {
         SQLiteDatabase db = getWritableDatabase();
 
         String sql = "DELETE FROM " + schema.getEscapedTableName()
                 + (!TextUtils.isEmpty(whereClause) ? " WHERE " + whereClause : "");
         trace(sql, whereArgs);
-        SQLiteStatement statement = db.compileStatement(sql);
-        statement.bindAllArgsAsStrings(whereArgs);
+        SQLiteStatement statement = acquireStatement(db, sql);
         try {
-            return statement.executeUpdateDelete();
+            bindAllArgs(statement, 1, whereArgs);
+            long t0 = startQuery();
+            int deletedRows = statement.executeUpdateDelete();
+            endQuery(sql, countArgs(whereArgs), t0, deletedRows);
+            invalidationTracker.notifyChanged(schema);
+            return deletedRows;
         } finally {
-            statement.close();
+            releaseStatement(sql, statement);
         }
     }
 
     public void transactionNonExclusiveSync(@NonNull Runnable task) {
-        SQLiteDatabase db = getReadableDatabase();
+        checkAccessThread(readOnMainThread, "Reading things must run in background");
+        SQLiteDatabase db = getMigratedDatabase();
         trace("begin transaction (non exclusive)", null);
-        db.beginTransactionNonExclusive();
+        long t0 = startQuery();
+        beginTransactionNonExclusive(db);
+        long t1 = startQuery();
 
+        boolean successful = false;
         try {
             task.run();
             db.setTransactionSuccessful();
+            successful = true;
         } finally {
-            db.endTransaction();
+            endTransaction(db, successful);
             trace("end transaction (non exclusive)", null);
+            endTransactionQuery("transaction (non exclusive)", t0, t1);
         }
     }
 
@@ -307,14 +642,61 @@ public class OrmaConnection {
     public void transactionSync(@NonNull Runnable task) {
         SQLiteDatabase db = getWritableDatabase();
         trace("begin transaction", null);
-        db.beginTransaction();
+        long t0 = startQuery();
+        beginTransaction(db);
+        long t1 = startQuery();
 
+        boolean successful = false;
         try {
             task.run();
             db.setTransactionSuccessful();
+            successful = true;
         } finally {
-            db.endTransaction();
+            endTransaction(db, successful);
             trace("end transaction", null);
+            endTransactionQuery("transaction", t0, t1);
+        }
+    }
+
+    /**
+     * @return The write queue of this connection, whose writer thread is started at the first call
+     */
+    @NonNull
+    public WriteQueue getWriteQueue() {
+        WriteQueue queue = writeQueue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = writeQueue;
+                if (queue == null) {
+                    queue = new WriteQueue(this, writeQueueMaxBatchSize, writeQueueMaxBatchMillis);
+                    writeQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    void beginTransaction(SQLiteDatabase db) {
+        db.beginTransaction();
+        invalidationTracker.beginTransaction();
+    }
+
+    void beginTransactionNonExclusive(SQLiteDatabase db) {
+        db.beginTransactionNonExclusive();
+        invalidationTracker.beginTransaction();
+    }
+
+    /**
+     * Ends a transaction begun by {@link #beginTransaction(SQLiteDatabase)}, and notifies the modified tables
+     * if it is the outermost transaction and committed.
+     */
+    void endTransaction(SQLiteDatabase db, boolean successful) {
+        boolean committed = false;
+        try {
+            db.endTransaction();
+            committed = successful;
+        } finally {
+            invalidationTracker.endTransaction(committed);
         }
     }
 
@@ -336,7 +718,10 @@ public class OrmaConnection {
     public void execSQL(@NonNull String sql, @NonNull Object... bindArgs) {
         trace(sql, bindArgs);
         SQLiteDatabase db = getWritableDatabase();
+        long t0 = startQuery();
         db.execSQL(sql, bindArgs);
+        endQuery(sql, bindArgs.length, t0, -1);
+        invalidationTracker.notifyChanged(schemas);
     }
 
     protected void checkSchemas(List<Schema<?>> schemas) {
@@ -352,6 +737,118 @@ public class OrmaConnection {
         db.execSQL(sql);
     }
 
+    /**
+     * @return The start time for {@link #endQuery(String, int, long, long)}, or {@code 0} if no
+     * {@link QueryListener} is registered
+     */
+    long startQuery() {
+        return queryListeners.length != 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Notifies {@link QueryListener}s of a statement executed.
+     *
+     * @param sql          A SQL statement
+     * @param bindArgCount The number of bind args
+     * @param startNanos   The value returned by {@link #startQuery()}
+     * @param rows         The number of rows returned or affected, or {@code -1} if unknown
+     */
+    void endQuery(@NonNull String sql, int bindArgCount, long startNanos, long rows) {
+        if (queryListeners.length != 0) {
+            QueryEvent event = new QueryEvent(sql, bindArgCount, System.nanoTime() - startNanos, rows,
+                    Thread.currentThread().getName(), queryShapes);
+            for (QueryListener listener : queryListeners) {
+                listener.onQuery(event);
+            }
+        }
+    }
+
+    /**
+     * Notifies {@link QueryListener}s of a transaction ended. It is called in the frame of the transaction, so the
+     * stack is captured there only if the transaction is slow, and resolved to the call site by listeners.
+     *
+     * @param name       The name of the transaction
+     * @param startNanos The value returned by {@link #startQuery()} before beginning the transaction
+     * @param begunNanos The value returned by {@link #startQuery()} after beginning the transaction
+     */
+    void endTransactionQuery(@NonNull String name, long startNanos, long begunNanos) {
+        if (queryListeners.length != 0) {
+            long waitNanos = begunNanos - startNanos;
+            long holdNanos = System.nanoTime() - begunNanos;
+            Throwable callStack = shouldCaptureCallSite(name, waitNanos, holdNanos) ? new Throwable() : null;
+            QueryEvent event = QueryEvent.forTransaction(name, waitNanos, holdNanos,
+                    Thread.currentThread().getName(), callStack);
+            for (QueryListener listener : queryListeners) {
+                listener.onQuery(event);
+            }
+        }
+    }
+
+    boolean shouldCaptureCallSite(@NonNull String name, long waitNanos, long holdNanos) {
+        boolean capture = waitNanos >= transactionCallSiteThresholdNanos
+                || holdNanos >= transactionCallSiteThresholdNanos;
+        long[] maxNanos = transactionMaxNanos.get(name);
+        if (maxNanos == null) {
+            maxNanos = new long[]{-1, -1};
+            long[] existing = transactionMaxNanos.putIfAbsent(name, maxNanos);
+            if (existing != null) {
+                maxNanos = existing;
+            }
+        }
+        synchronized (maxNanos) {
+            if (holdNanos > maxNanos[0]) {
+                maxNanos[0] = holdNanos;
+                capture = true;
+            }
+            if (waitNanos > maxNanos[1]) {
+                maxNanos[1] = waitNanos;
+                capture = true;
+            }
+        }
+        return capture;
+    }
+
+    /**
+     * @return The first stack frame out of Orma and RxJava, or {@code null} if not found
+     */
+    @Nullable
+    static String findCallSite(@NonNull StackTraceElement[] stackTrace) {
+        for (StackTraceElement frame : stackTrace) {
+            String className = frame.getClassName();
+            int lastDot = className.lastIndexOf('.');
+            String packageName = lastDot != -1 ? className.substring(0, lastDot) : "";
+            if (packageName.equals("com.github.gfx.android.orma")
+                    || packageName.equals("com.github.gfx.android.orma.internal")
+                    || className.startsWith("rx.")
+                    || className.startsWith("java.")
+                    || className.startsWith("dalvik.")
+                    // OrmaDatabase delegates transactions to OrmaConnection
+                    || isDatabaseHandle(className)) {
+                continue;
+            }
+            return frame.toString();
+        }
+        return null;
+    }
+
+    static boolean isDatabaseHandle(String className) {
+        Boolean result = databaseHandleClasses.get(className);
+        if (result == null) {
+            try {
+                result = DatabaseHandle.class.isAssignableFrom(
+                        Class.forName(className, false, OrmaConnection.class.getClassLoader()));
+            } catch (ClassNotFoundException e) {
+                result = false;
+            }
+            databaseHandleClasses.put(className, result);
+        }
+        return result;
+    }
+
+    static int countArgs(@Nullable Object[] args) {
+        return args != null ? args.length : 0;
+    }
+
     protected void trace(@NonNull String sql, @Nullable Object[] bindArgs) {
         if (trace) {
             String prefix = "[" + Thread.currentThread().getName() + "] ";
@@ -360,6 +857,9 @@ public class OrmaConnection {
             } else {
                 Log.v(TAG, prefix + sql + " - " + Arrays.deepToString(bindArgs));
             }
+            if (queryPlanInspector != null && QueryPlanInspector.isInspectable(sql)) {
+                queryPlanInspector.inspect(this, getMigratedDatabase(), sql);
+            }
         }
     }
 
@@ -27,6 +27,9 @@ import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class represents Orma options, and it is the base class of {@code OrmaDatabase.Builder}.
  */
@@ -59,6 +62,20 @@ public abstract class OrmaDatabaseBuilderBase<T extends OrmaDatabaseBuilderBase<
 
     AccessThreadConstraint writeOnMainThread;
 
+    int statementCacheSize = 32;
+
+    int readerPoolSize = 0;
+
+    QueryPlanInspector queryPlanInspector;
+
+    final List<QueryListener> queryListeners = new ArrayList<>();
+
+    int writeQueueMaxBatchSize = 100;
+
+    long writeQueueMaxBatchMillis = 50;
+
+    long transactionCallSiteThresholdMillis = 16;
+
     public OrmaDatabaseBuilderBase(@NonNull Context context) {
         this.context = context.getApplicationContext();
         this.debug = extractDebuggable(context);
@@ -229,6 +246,93 @@ public abstract class OrmaDatabaseBuilderBase<T extends OrmaDatabaseBuilderBase<
         return (T) this;
     }
 
+    /**
+     * Sets the max number of prepared statements cached in a connection. The default is {@code 32}.
+     *
+     * @param statementCacheSize the max number of cached statements, or {@code 0} to disable the cache
+     * @return the receiver itself
+     */
+    public T statementCacheSize(@IntRange(from = 0) int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return (T) this;
+    }
+
+    /**
+     * Sets the number of read-only connections, which are used for reading things in parallel with writing.
+     * It takes effect only if the database is a file and write-ahead logging is enabled on Android 4.1 or later.
+     * Reading in a transaction uses the writable connection to see its own changes. The default is {@code 0}.
+     *
+     * @param readerPoolSize the number of read-only connections, or {@code 0} to read things with the writable one
+     * @return the receiver itself
+     */
+    public T readerPoolSize(@IntRange(from = 0) int readerPoolSize) {
+        this.readerPoolSize = readerPoolSize;
+        return (T) this;
+    }
+
+    /**
+     * Sets an inspector that explains the query plans of traced statements, which is used to find queries
+     * that scan whole tables. It takes effect only if {@link #trace(boolean)} is enabled. The default is {@code null}.
+     *
+     * @param queryPlanInspector an inspector to collect findings, or {@code null} to disable it
+     * @return the receiver itself
+     */
+    public T queryPlanInspector(@Nullable QueryPlanInspector queryPlanInspector) {
+        this.queryPlanInspector = queryPlanInspector;
+        return (T) this;
+    }
+
+    /**
+     * Adds a listener that receives the metrics of all the statements and transactions, e.g. {@link QueryHistogram}
+     * and {@link SlowQueryLogger}. Queries are reported when their cursors are read for the first time.
+     *
+     * @param queryListener a listener called in the thread that executes statements
+     * @return the receiver itself
+     */
+    public T addQueryListener(@NonNull QueryListener queryListener) {
+        queryListeners.add(queryListener);
+        return (T) this;
+    }
+
+    /**
+     * Sets the max number of tasks that {@link WriteQueue} commits in a transaction, which bounds the latency of
+     * the tasks waiting for the transaction. The default is {@code 100}.
+     *
+     * @param writeQueueMaxBatchSize the max number of tasks in a transaction
+     * @return the receiver itself
+     */
+    public T writeQueueMaxBatchSize(@IntRange(from = 1) int writeQueueMaxBatchSize) {
+        this.writeQueueMaxBatchSize = writeQueueMaxBatchSize;
+        return (T) this;
+    }
+
+    /**
+     * Sets the time that {@link WriteQueue} runs tasks in a transaction before committing it, which bounds the time
+     * that other writers wait for the lock of the database. The rest of the tasks go to the next transaction.
+     * A task that has started is not interrupted, so a transaction takes longer if a task does.
+     * The default is {@code 50}.
+     *
+     * @param writeQueueMaxBatchMillis the time in milliseconds to run tasks in a transaction
+     * @return the receiver itself
+     */
+    public T writeQueueMaxBatchMillis(@IntRange(from = 0) long writeQueueMaxBatchMillis) {
+        this.writeQueueMaxBatchMillis = writeQueueMaxBatchMillis;
+        return (T) this;
+    }
+
+    /**
+     * Sets the time that a transaction holds or waits for the database before its call site is captured for
+     * {@link QueryEvent#getCallSite()}. The call site of a transaction that is the longest of its name so far is
+     * always captured. It is used only if any {@link QueryListener} is added. The default is {@code 16}.
+     *
+     * @param transactionCallSiteThresholdMillis the time in milliseconds
+     * @return the receiver itself
+     */
+    public T transactionCallSiteThresholdMillis(@IntRange(from = 0) long transactionCallSiteThresholdMillis) {
+        this.transactionCallSiteThresholdMillis = transactionCallSiteThresholdMillis;
+        return (T) this;
+    }
+
     @NonNull
     protected abstract String getSchemaHash();
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.database.Cursor;
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rx.functions.Action1;
+
+/**
+ * Represents a {@code SELECT} statement that reads only the specified columns, created by
+ * {@link Selector#select(ColumnDef[])}. Each row is a {@link Row}, whose values are read by {@link ColumnDef}s.
+ *
+ * @param <Model> The model class
+ */
+public class Projection<Model> {
+
+    final Selector<Model, ?> selector;
+
+    final List<ColumnDef<Model, ?>> columns;
+
+    final int[] indexes;
+
+    final String[] resultColumns;
+
+    public Projection(@NonNull Selector<Model, ?> selector, @NonNull List<ColumnDef<Model, ?>> columns) {
+        this.selector = selector;
+        this.columns = columns;
+        this.indexes = new int[columns.size()];
+
+        List<String> resultColumns = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            indexes[i] = resultColumns.size();
+            resultColumns.addAll(Arrays.asList(columns.get(i).getResultColumns()));
+        }
+        this.resultColumns = resultColumns.toArray(new String[resultColumns.size()]);
+    }
+
+    @NonNull
+    public List<ColumnDef<Model, ?>> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return A {@code SELECT} statement the projection represents
+     */
+    @NonNull
+    public String buildQuery() {
+        return selector.buildQueryWithColumns(resultColumns);
+    }
+
+    @CheckResult
+    @NonNull
+    public Cursor execute() {
+        return selector.executeWithColumns(resultColumns);
+    }
+
+    @NonNull
+    public Row<Model> newRowFromCursor(@NonNull Cursor cursor) {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).getFromCursor(selector.getConnection(), cursor, indexes[i]);
+        }
+        return new Row<>(columns, values);
+    }
+
+    /**
+     * Executes a query and returns the result as a list.
+     *
+     * @return A list of rows
+     */
+    @NonNull
+    public List<Row<Model>> toList() {
+        final List<Row<Model>> list = new ArrayList<>();
+        forEach(new Action1<Row<Model>>() {
+            @Override
+            public void call(Row<Model> row) {
+                list.add(row);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Executes a query and passes each row to {@code action}.
+     *
+     * @param action A function to consume each row
+     */
+    public void forEach(@NonNull Action1<Row<Model>> action) {
+        Cursor cursor = execute();
+        try {
+            for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+                action.call(newRowFromCursor(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * A row of {@link Projection}, which holds the values of the selected columns.
+     *
+     * @param <Model> The model class
+     */
+    public static class Row<Model> {
+
+        final List<ColumnDef<Model, ?>> columns;
+
+        final Object[] values;
+
+        Row(List<ColumnDef<Model, ?>> columns, Object[] values) {
+            this.columns = columns;
+            this.values = values;
+        }
+
+        /**
+         * @param column A column in the projection
+         * @param <T>    The type of the column
+         * @return The value of {@code column}
+         * @throws IllegalArgumentException if {@code column} is not selected
+         */
+        @SuppressWarnings("unchecked")
+        @Nullable
+        public <T> T get(@NonNull ColumnDef<Model, T> column) {
+            for (int i = 0; i < values.length; i++) {
+                if (columns.get(i) == column) {
+                    return (T) values[i];
+                }
+            }
+            throw new IllegalArgumentException(column + " is not selected");
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Row{");
+            for (int i = 0; i < values.length; i++) {
+                if (i != 0) {
+                    sb.append(", ");
+                }
+                sb.append(columns.get(i).name);
+                sb.append('=');
+                sb.append(values[i]);
+            }
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
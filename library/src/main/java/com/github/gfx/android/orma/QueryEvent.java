@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import com.github.gfx.android.orma.internal.QueryShapes;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A metric of a statement, or a transaction, executed by {@link OrmaConnection}.
+ */
+public class QueryEvent {
+
+    /**
+     * The SQL executed, or {@code "transaction"} for a transaction
+     */
+    @NonNull
+    public final String sql;
+
+    public final int bindArgCount;
+
+    /**
+     * The wall time to execute the statement, or the time that the transaction held the database.
+     * For queries, it is the time to prepare the statement and to fill the cursor for the first time, which steps
+     * through all the rows to count them.
+     */
+    public final long elapsedNanos;
+
+    /**
+     * The number of rows returned or affected, or {@code -1} if unknown
+     */
+    public final long rows;
+
+    /**
+     * The name of the thread that executed the statement
+     */
+    @NonNull
+    public final String threadName;
+
+    public final boolean transaction;
+
+    /**
+     * The time that the transaction waited to begin, i.e. to get the lock of the database, or {@code 0} for
+     * statements
+     */
+    public final long waitNanos;
+
+    /**
+     * The stack captured at the end of the transaction, or {@code null} if it was not captured.
+     * It is resolved to {@link #getCallSite()} on demand, because walking stack frames is expensive.
+     */
+    @Nullable
+    final Throwable callStack;
+
+    @Nullable
+    String callSite;
+
+    @Nullable
+    final QueryShapes queryShapes;
+
+    String shape;
+
+    public QueryEvent(@NonNull String sql, int bindArgCount, long elapsedNanos, long rows, @NonNull String threadName) {
+        this(sql, bindArgCount, elapsedNanos, rows, threadName, null);
+    }
+
+    QueryEvent(@NonNull String sql, int bindArgCount, long elapsedNanos, long rows, @NonNull String threadName,
+            @Nullable QueryShapes queryShapes) {
+        this(sql, bindArgCount, elapsedNanos, rows, threadName, false, 0, null, null, queryShapes);
+    }
+
+    QueryEvent(@NonNull String sql, int bindArgCount, long elapsedNanos, long rows, @NonNull String threadName,
+            boolean transaction, long waitNanos, @Nullable Throwable callStack, @Nullable String callSite,
+            @Nullable QueryShapes queryShapes) {
+        this.sql = sql;
+        this.bindArgCount = bindArgCount;
+        this.elapsedNanos = elapsedNanos;
+        this.rows = rows;
+        this.threadName = threadName;
+        this.transaction = transaction;
+        this.waitNanos = waitNanos;
+        this.callStack = callStack;
+        this.callSite = callSite;
+        this.queryShapes = queryShapes;
+    }
+
+    /**
+     * @param name       {@code "transaction"} or {@code "transaction (non exclusive)"}
+     * @param waitNanos  The time to begin the transaction
+     * @param holdNanos  The time from the beginning to the end of the transaction
+     * @param threadName The name of the thread that ran the transaction
+     * @param callSite   The caller that began the transaction
+     * @return A new event for a transaction
+     */
+    @NonNull
+    public static QueryEvent forTransaction(@NonNull String name, long waitNanos, long holdNanos,
+            @NonNull String threadName, @Nullable String callSite) {
+        return new QueryEvent(name, 0, holdNanos, -1, threadName, true, waitNanos, null, callSite, null);
+    }
+
+    @NonNull
+    static QueryEvent forTransaction(@NonNull String name, long waitNanos, long holdNanos,
+            @NonNull String threadName, @Nullable Throwable callStack) {
+        return new QueryEvent(name, 0, holdNanos, -1, threadName, true, waitNanos, callStack, null, null);
+    }
+
+    /**
+     * The call site is captured only for transactions that held or waited for the database longer than
+     * {@link OrmaDatabaseBuilderBase#transactionCallSiteThresholdMillis(long)}, or longer than any transaction of
+     * the same name before.
+     *
+     * @return The first stack frame out of Orma that ran the transaction, or {@code null} for statements and
+     * transactions whose call sites are not captured
+     */
+    @Nullable
+    public String getCallSite() {
+        if (callSite == null && callStack != null) {
+            callSite = OrmaConnection.findCallSite(callStack.getStackTrace());
+        }
+        return callSite;
+    }
+
+    /**
+     * @return The SQL whose literals are replaced with placeholders, which is shared by queries that differ only in
+     * values, e.g. {@code IN} lists of different lengths. For transactions, it is the name of the transaction.
+     */
+    @NonNull
+    public String getShape() {
+        if (shape == null) {
+            if (transaction) {
+                shape = sql;
+            } else {
+                shape = queryShapes != null ? queryShapes.of(sql) : QueryShapes.normalize(sql);
+            }
+        }
+        return shape;
+    }
+
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "QueryEvent{" +
+                "sql='" + sql + '\'' +
+                ", bindArgCount=" + bindArgCount +
+                ", elapsedNanos=" + elapsedNanos +
+                ", rows=" + rows +
+                ", threadName='" + threadName + '\'' +
+                (transaction ? ", waitNanos=" + waitNanos + ", callSite='" + getCallSite() + '\'' : "") +
+                '}';
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.support.annotation.FloatRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link QueryListener} that aggregates the latency of statements by their shapes (see {@link QueryEvent#getShape()})
+ * into histograms, whose buckets are powers of two in milliseconds: {@code <1ms, <2ms, <4ms, ..., <1024ms, >=1024ms}.
+ *
+ * Transactions are aggregated by their names, with the time to wait for the lock of the database, the time to
+ * hold it, and the call sites of the longest ones.
+ */
+public class QueryHistogram implements QueryListener {
+
+    static final int BUCKETS = 12;
+
+    final ConcurrentHashMap<String, Stats> statsMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void onQuery(@NonNull QueryEvent event) {
+        String shape = event.getShape();
+        Stats stats = statsMap.get(shape);
+        if (stats == null) {
+            stats = new Stats(shape, event.transaction);
+            Stats existing = statsMap.putIfAbsent(shape, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.add(event);
+    }
+
+    /**
+     * @return Snapshots of the statistics sorted by the total time in descending order
+     */
+    @NonNull
+    public List<Stats> getStats() {
+        List<Stats> list = new ArrayList<>(statsMap.size());
+        for (Stats stats : statsMap.values()) {
+            list.add(stats.snapshot());
+        }
+        Collections.sort(list, new Comparator<Stats>() {
+            @Override
+            public int compare(Stats a, Stats b) {
+                return a.totalNanos < b.totalNanos ? 1 : a.totalNanos > b.totalNanos ? -1 : 0;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * @return Snapshots of the statistics of transactions sorted by the max time to hold the database in descending
+     * order, which shows the transactions that block others
+     */
+    @NonNull
+    public List<Stats> getTransactionStats() {
+        List<Stats> list = new ArrayList<>();
+        for (Stats stats : statsMap.values()) {
+            if (stats.transaction) {
+                list.add(stats.snapshot());
+            }
+        }
+        Collections.sort(list, new Comparator<Stats>() {
+            @Override
+            public int compare(Stats a, Stats b) {
+                return a.maxNanos < b.maxNanos ? 1 : a.maxNanos > b.maxNanos ? -1 : 0;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * @return A human-readable report of {@link #getStats()}
+     */
+    @NonNull
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        for (Stats stats : getStats()) {
+            sb.append(stats).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void clear() {
+        statsMap.clear();
+    }
+
+    static int bucketOf(long elapsedNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        // the number of bits of millis, i.e. 0ms -> 0, 1ms -> 1, 2-3ms -> 2, 4-7ms -> 3, ...
+        int bucket = 64 - Long.numberOfLeadingZeros(millis);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * Statistics of a statement shape.
+     */
+    public static class Stats {
+
+        @NonNull
+        public final String shape;
+
+        public final boolean transaction;
+
+        long count;
+
+        long totalNanos;
+
+        long maxNanos;
+
+        long totalRows;
+
+        long totalWaitNanos;
+
+        long maxWaitNanos;
+
+        QueryEvent maxEvent;
+
+        QueryEvent maxWaitEvent;
+
+        final long[] buckets = new long[BUCKETS];
+
+        Stats(@NonNull String shape, boolean transaction) {
+            this.shape = shape;
+            this.transaction = transaction;
+        }
+
+        synchronized void add(QueryEvent event) {
+            count++;
+            totalNanos += event.elapsedNanos;
+            if (event.elapsedNanos >= maxNanos) {
+                maxNanos = event.elapsedNanos;
+                maxEvent = event;
+            }
+            if (event.rows > 0) {
+                totalRows += event.rows;
+            }
+            totalWaitNanos += event.waitNanos;
+            if (event.waitNanos >= maxWaitNanos) {
+                maxWaitNanos = event.waitNanos;
+                maxWaitEvent = event;
+            }
+            buckets[bucketOf(event.elapsedNanos)]++;
+        }
+
+        synchronized Stats snapshot() {
+            Stats stats = new Stats(shape, transaction);
+            stats.count = count;
+            stats.totalNanos = totalNanos;
+            stats.maxNanos = maxNanos;
+            stats.totalRows = totalRows;
+            stats.totalWaitNanos = totalWaitNanos;
+            stats.maxWaitNanos = maxWaitNanos;
+            stats.maxEvent = maxEvent;
+            stats.maxWaitEvent = maxWaitEvent;
+            System.arraycopy(buckets, 0, stats.buckets, 0, BUCKETS);
+            return stats;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public synchronized long getTotalRows() {
+            return totalRows;
+        }
+
+        /**
+         * @return The total time that transactions waited to begin, or {@code 0} for statements
+         */
+        public synchronized long getTotalWaitNanos() {
+            return totalWaitNanos;
+        }
+
+        /**
+         * @return The max time that a transaction waited to begin, or {@code 0} for statements
+         */
+        public synchronized long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        /**
+         * @return The call site of the transaction that held the database for the longest time, or {@code null} for
+         * statements or if it was not captured
+         */
+        @Nullable
+        public synchronized String getMaxCallSite() {
+            return maxEvent != null ? maxEvent.getCallSite() : null;
+        }
+
+        /**
+         * @return The call site of the transaction that waited to begin for the longest time, or {@code null} for
+         * statements or if it was not captured
+         */
+        @Nullable
+        public synchronized String getMaxWaitCallSite() {
+            return maxWaitEvent != null ? maxWaitEvent.getCallSite() : null;
+        }
+
+        /**
+         * @return The number of statements in each bucket: {@code <1ms, <2ms, <4ms, ..., <1024ms, >=1024ms}
+         */
+        @NonNull
+        public synchronized long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * @param percentile e.g. {@code 0.99} for p99
+         * @return The upper bound of the bucket that contains the percentile, or the max for the last bucket
+         */
+        public synchronized long getPercentileMillis(@FloatRange(from = 0.0, to = 1.0) double percentile) {
+            long threshold = (long) Math.ceil(count * percentile);
+            long n = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                n += buckets[i];
+                if (n >= threshold && n != 0) {
+                    return 1L << i;
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "count=" + count +
+                    ", total=" + TimeUnit.NANOSECONDS.toMillis(totalNanos) + "ms" +
+                    ", p50<" + getPercentileMillis(0.5) + "ms" +
+                    ", p99<" + getPercentileMillis(0.99) + "ms" +
+                    ", max=" + TimeUnit.NANOSECONDS.toMillis(maxNanos) + "ms" +
+                    (transaction
+                            ? ", wait=" + TimeUnit.NANOSECONDS.toMillis(totalWaitNanos) + "ms"
+                            + ", max wait=" + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms"
+                            + ", max at " + getMaxCallSite() + ", max wait at " + getMaxWaitCallSite()
+                            : ", rows=" + totalRows) +
+                    ": " + shape;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives metrics of statements executed by {@link OrmaConnection}, which is registered by
+ * {@link OrmaDatabaseBuilderBase#addQueryListener(QueryListener)}.
+ *
+ * It is called in the thread that executes the statement, so implementations must be thread-safe and fast.
+ *
+ * @see QueryHistogram
+ * @see SlowQueryLogger
+ */
+public interface QueryListener {
+
+    void onQuery(@NonNull QueryEvent event);
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs {@code EXPLAIN QUERY PLAN} once for each distinct shape of statements traced by {@link OrmaConnection},
+ * and collects full table scans and temporary B-tree sorts with suggestions of indexes to cover them.
+ * This is enabled by {@link OrmaDatabaseBuilderBase#queryPlanInspector(QueryPlanInspector)} with tracing,
+ * which is intended to be used in tests:
+ *
+ * <pre>
+ * QueryPlanInspector inspector = new QueryPlanInspector();
+ * OrmaDatabase orma = OrmaDatabase.builder(context)
+ *     .trace(true)
+ *     .queryPlanInspector(inspector)
+ *     .build();
+ *
+ * // run tests ...
+ *
+ * System.out.println(inspector.getReport());
+ * </pre>
+ *
+ * Suggestions are made by columns found in the {@code WHERE}, {@code GROUP BY}, and {@code ORDER BY} clauses,
+ * so they are just hints to be verified.
+ */
+public class QueryPlanInspector {
+
+    static final String TAG = OrmaConnection.TAG;
+
+    final long minRowCount;
+
+    final Set<String> inspectedStatements = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    final List<Finding> findings = new ArrayList<>();
+
+    public QueryPlanInspector() {
+        this(0);
+    }
+
+    /**
+     * @param minRowCount Findings on tables with fewer rows than this are ignored
+     */
+    public QueryPlanInspector(long minRowCount) {
+        this.minRowCount = minRowCount;
+    }
+
+    /**
+     * Inspects a statement if its shape has not been inspected yet.
+     *
+     * @param conn A connection that has the schemas of the tables in the statement
+     * @param db   A database to explain the statement with
+     * @param sql  A statement, whose parameters need not be bound
+     */
+    public void inspect(@NonNull OrmaConnection conn, @NonNull SQLiteDatabase db, @NonNull String sql) {
+        if (!isInspectable(sql) || !inspectedStatements.add(conn.queryShapes.of(sql))) {
+            return;
+        }
+
+        List<String> details = new ArrayList<>();
+        try {
+            Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+            try {
+                int detailIndex = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    details.add(cursor.getString(detailIndex));
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to explain query plan: " + sql, e);
+            return;
+        }
+
+        for (String detail : details) {
+            Finding finding = analyze(conn, db, sql, detail);
+            if (finding != null && finding.rowCount >= minRowCount) {
+                Log.w(TAG, finding.toString());
+                synchronized (findings) {
+                    findings.add(finding);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    Finding analyze(OrmaConnection conn, SQLiteDatabase db, String sql, String detail) {
+        String upperDetail = detail.toUpperCase(Locale.US);
+        Schema<?> schema;
+        List<ColumnDef<?, ?>> columns;
+        if (upperDetail.startsWith("SCAN ") && !upperDetail.contains(" USING ")
+                && !upperDetail.contains("SUBQUERY") && !upperDetail.contains("CONSTANT ROW")) {
+            // "SCAN TABLE foo", "SCAN TABLE foo AS f", or "SCAN foo" since SQLite 3.36
+            String[] words = detail.split("\\s+");
+            String tableName = words.length >= 3 && words[1].equalsIgnoreCase("TABLE") ? words[2] : words[1];
+            schema = findSchema(conn, tableName);
+            String whereClause = extractClause(sql, "WHERE");
+            if (schema == null || whereClause == null) {
+                // a query without conditions has to read all the rows anyway
+                return null;
+            }
+            columns = findColumns(schema, whereClause);
+        } else if (upperDetail.startsWith("USE TEMP B-TREE FOR ")) {
+            schema = findSchema(conn, extractMainTableName(sql));
+            if (schema == null) {
+                return null;
+            }
+            String clause = upperDetail.contains("GROUP BY") ? extractClause(sql, "GROUP BY")
+                    : upperDetail.contains("DISTINCT") ? null
+                    : extractClause(sql, "ORDER BY");
+            // columns compared by equality in WHERE come first to serve the sort order
+            String whereClause = extractClause(sql, "WHERE");
+            columns = whereClause != null ? findColumns(schema, whereClause) : new ArrayList<ColumnDef<?, ?>>();
+            if (clause != null) {
+                for (ColumnDef<?, ?> column : findColumns(schema, clause)) {
+                    if (!columns.contains(column)) {
+                        columns.add(column);
+                    }
+                }
+            }
+        } else {
+            return null;
+        }
+        long rowCount = DatabaseUtils.queryNumEntries(db, schema.getEscapedTableName());
+        return new Finding(sql, detail, schema, columns, rowCount);
+    }
+
+    /**
+     * @return The findings collected so far, sorted by the number of rows in descending order
+     */
+    @NonNull
+    public List<Finding> getFindings() {
+        List<Finding> list;
+        synchronized (findings) {
+            list = new ArrayList<>(findings);
+        }
+        Collections.sort(list, new Comparator<Finding>() {
+            @Override
+            public int compare(Finding a, Finding b) {
+                return a.rowCount < b.rowCount ? 1 : a.rowCount > b.rowCount ? -1 : 0;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * @return Distinct suggestions aggregated from {@link #getFindings()}
+     */
+    @NonNull
+    public List<String> getSuggestions() {
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (Finding finding : getFindings()) {
+            String suggestion = finding.getSuggestion();
+            if (suggestion != null) {
+                suggestions.add(suggestion);
+            }
+        }
+        return new ArrayList<>(suggestions);
+    }
+
+    /**
+     * @return A human-readable report of the findings and the suggestions
+     */
+    @NonNull
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        List<Finding> findings = getFindings();
+        sb.append("QueryPlanInspector: ")
+                .append(inspectedStatements.size()).append(" statements inspected, ")
+                .append(findings.size()).append(" findings\n");
+        for (Finding finding : findings) {
+            sb.append("* ").append(finding).append('\n');
+        }
+        List<String> suggestions = getSuggestions();
+        if (!suggestions.isEmpty()) {
+            sb.append("Suggestions:\n");
+            for (String suggestion : suggestions) {
+                sb.append("* ").append(suggestion).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    public void clear() {
+        inspectedStatements.clear();
+        synchronized (findings) {
+            findings.clear();
+        }
+    }
+
+    static boolean isInspectable(String sql) {
+        int i = 0;
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return sql.regionMatches(true, i, "SELECT", 0, 6)
+                || sql.regionMatches(true, i, "UPDATE", 0, 6)
+                || sql.regionMatches(true, i, "DELETE", 0, 6)
+                || sql.regionMatches(true, i, "WITH", 0, 4);
+    }
+
+    @Nullable
+    static Schema<?> findSchema(OrmaConnection conn, @Nullable String tableName) {
+        if (tableName == null) {
+            return null;
+        }
+        tableName = unquote(tableName);
+        for (Schema<?> schema : conn.getSchemas()) {
+            if (schema.getTableName().equalsIgnoreCase(tableName)) {
+                return schema;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    static String extractMainTableName(String sql) {
+        String upper = sql.toUpperCase(Locale.US);
+        int start;
+        if ((start = upper.indexOf(" FROM ")) != -1) {
+            start += 6;
+        } else if (upper.trim().startsWith("UPDATE ")) {
+            start = upper.indexOf("UPDATE ") + 7;
+        } else {
+            return null;
+        }
+        String[] words = sql.substring(start).trim().split("[\\s,()]+", 2);
+        return words.length > 0 ? words[0] : null;
+    }
+
+    /**
+     * @return The body of the clause up to the next clause, or {@code null} if the statement does not have it
+     */
+    @Nullable
+    static String extractClause(String sql, String keyword) {
+        String upper = sql.toUpperCase(Locale.US);
+        int start = upper.lastIndexOf(" " + keyword + " ");
+        if (start == -1) {
+            return null;
+        }
+        start += keyword.length() + 2;
+        int end = sql.length();
+        for (String next : new String[]{" GROUP BY ", " HAVING ", " ORDER BY ", " LIMIT "}) {
+            int i = upper.indexOf(next, start);
+            if (i != -1 && i < end) {
+                end = i;
+            }
+        }
+        return sql.substring(start, end);
+    }
+
+    /**
+     * @return Columns of the schema referred in the clause, in the order of appearance
+     */
+    static List<ColumnDef<?, ?>> findColumns(Schema<?> schema, String clause) {
+        List<ColumnDef<?, ?>> columns = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (ColumnDef<?, ?> column : schema.getColumns()) {
+            Pattern pattern = Pattern.compile("(?<![\\w`])`?" + Pattern.quote(column.name) + "`?(?![\\w`])");
+            Matcher matcher = pattern.matcher(clause);
+            if (matcher.find()) {
+                int position = matcher.start();
+                int i = 0;
+                while (i < positions.size() && positions.get(i) < position) {
+                    i++;
+                }
+                positions.add(i, position);
+                columns.add(i, column);
+            }
+        }
+        return columns;
+    }
+
+    static String unquote(String name) {
+        if (name.length() >= 2 && (name.charAt(0) == '`' || name.charAt(0) == '"')) {
+            return name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+
+    /**
+     * A query plan step that may be slow as the table grows.
+     */
+    public static class Finding {
+
+        /**
+         * The statement explained
+         */
+        @NonNull
+        public final String sql;
+
+        /**
+         * The {@code detail} column of {@code EXPLAIN QUERY PLAN}, e.g. {@code "SCAN TABLE Book"}
+         */
+        @NonNull
+        public final String detail;
+
+        @NonNull
+        public final Schema<?> schema;
+
+        /**
+         * Columns that an index should cover, or empty if no column is found
+         */
+        @NonNull
+        public final List<ColumnDef<?, ?>> columns;
+
+        /**
+         * The number of rows in the table when it is inspected
+         */
+        public final long rowCount;
+
+        public Finding(@NonNull String sql, @NonNull String detail, @NonNull Schema<?> schema,
+                @NonNull List<ColumnDef<?, ?>> columns, long rowCount) {
+            this.sql = sql;
+            this.detail = detail;
+            this.schema = schema;
+            this.columns = columns;
+            this.rowCount = rowCount;
+        }
+
+        /**
+         * @return {@code @Column(indexed = true)} for a single column, {@code CREATE INDEX} for multiple columns,
+         * or {@code null} if no column is found
+         */
+        @Nullable
+        public String getSuggestion() {
+            if (columns.isEmpty()) {
+                return null;
+            }
+            if (columns.size() == 1) {
+                ColumnDef<?, ?> column = columns.get(0);
+                if (column.isIndexed() || column.isPrimaryKey()) {
+                    return null;
+                }
+                return "@Column(indexed = true) for " + column;
+            }
+            StringBuilder name = new StringBuilder("index");
+            StringBuilder names = new StringBuilder();
+            for (ColumnDef<?, ?> column : columns) {
+                name.append('_').append(column.name);
+                if (names.length() != 0) {
+                    names.append(", ");
+                }
+                names.append(column.getEscapedName());
+            }
+            return "CREATE INDEX `" + name + "_on_" + schema.getTableName() + "` ON "
+                    + schema.getEscapedTableName() + " (" + names + ")";
+        }
+
+        @Override
+        public String toString() {
+            String suggestion = getSuggestion();
+            return detail + " (" + rowCount + " rows) in: " + sql
+                    + (suggestion != null ? " - consider " + suggestion : "");
+        }
+    }
+}
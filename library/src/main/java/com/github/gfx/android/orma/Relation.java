@@ -44,6 +44,10 @@ public abstract class Relation<Model, R extends Relation<Model, ?>> extends Orma
 
     final protected ArrayList<OrderSpec<Model>> orderSpecs = new ArrayList<>();
 
+    final protected ArrayList<ColumnDef<Model, ?>> includes = new ArrayList<>();
+
+    final protected ArrayList<HasManyDef<Model, ?>> hasManyIncludes = new ArrayList<>();
+
     public Relation(@NonNull OrmaConnection connection) {
         super(connection);
     }
@@ -51,6 +55,8 @@ public abstract class Relation<Model, R extends Relation<Model, ?>> extends Orma
     public Relation(@NonNull Relation<Model, ?> relation) {
         super(relation);
         orderSpecs.addAll(relation.orderSpecs);
+        includes.addAll(relation.includes);
+        hasManyIncludes.addAll(relation.hasManyIncludes);
     }
 
     @SuppressWarnings("unchecked")
@@ -59,6 +65,28 @@ public abstract class Relation<Model, R extends Relation<Model, ?>> extends Orma
         return (R) this;
     }
 
+    /**
+     * @param association A {@link SingleAssociation} column
+     * @return the receiver itself
+     * @see Selector#includes(ColumnDef)
+     */
+    @SuppressWarnings("unchecked")
+    public R includes(@NonNull ColumnDef<Model, ? extends SingleAssociation<?>> association) {
+        includes.add(association);
+        return (R) this;
+    }
+
+    /**
+     * @param hasMany A has-many association
+     * @return the receiver itself
+     * @see Selector#includes(HasManyDef)
+     */
+    @SuppressWarnings("unchecked")
+    public R includes(@NonNull HasManyDef<Model, ?> hasMany) {
+        hasManyIncludes.add(hasMany);
+        return (R) this;
+    }
+
     @Nullable
     protected String buildOrderingTerms() {
         if (orderSpecs.isEmpty()) {
@@ -84,6 +112,16 @@ public abstract class Relation<Model, R extends Relation<Model, ?>> extends Orma
         return selector().isEmpty();
     }
 
+    /**
+     * @return An {@link Observable} that yields {@link #count()} each time it changes
+     * @see Selector#observeCount()
+     */
+    @CheckResult
+    @NonNull
+    public Observable<Integer> observeCount() {
+        return selector().observeCount();
+    }
+
     @NonNull
     public Model get(@IntRange(from = 0) int position) {
         return selector().get(position);
@@ -241,7 +279,8 @@ public abstract class Relation<Model, R extends Relation<Model, ?>> extends Orma
     }
 
     /**
-     * Equivalent to {@code relation.inserter(OnConflict.REPLACE, false)}.
+     * Equivalent to {@code relation.inserter(OnConflict.REPLACE, false)}. Note that {@code REPLACE} deletes the
+     * existing row before inserting a new one; use {@link #upsert(Object)} to update the existing row instead.
      *
      * @return An {@code Inserter} instance to upsert rows.
      */
@@ -250,6 +289,50 @@ public abstract class Relation<Model, R extends Relation<Model, ?>> extends Orma
         return inserter(OnConflict.REPLACE, false);
     }
 
+    /**
+     * Inserts a model, or updates the existing row with the same primary key.
+     *
+     * @param model A model to upsert
+     * @return The row id of the inserted or updated row
+     * @see Upserter
+     */
+    public long upsert(@NonNull Model model) {
+        return new Upserter<>(conn, getSchema()).execute(model);
+    }
+
+    /**
+     * Upserts models in a transaction.
+     *
+     * @param models Models to upsert
+     * @see Upserter
+     */
+    public void upsertAll(@NonNull Iterable<Model> models) {
+        new Upserter<>(conn, getSchema()).executeAll(models);
+    }
+
+    /**
+     * @param model A model to upsert
+     * @return A {@link Single} that yields the row id of the inserted or updated row
+     * @see Upserter
+     */
+    @CheckResult
+    @NonNull
+    public Single<Long> upsertAsObservable(@NonNull Model model) {
+        return new Upserter<>(conn, getSchema()).executeAsObservable(model);
+    }
+
+    /**
+     * Updates the row of the model identified by its primary key. If the model declares a {@link ChangeTracker},
+     * only the columns changed since it is loaded or written are written; otherwise all the columns are written.
+     *
+     * @param model A model to update
+     * @return The number of rows updated, which is {@code 0} without executing a query if nothing is changed
+     * @see ChangeTracker
+     */
+    public int update(@NonNull Model model) {
+        return updater().executeWithModel(model);
+    }
+
     // Iterator<Model>
 
     @Override
@@ -88,6 +88,26 @@ public interface Schema<Model> extends MigrationSchema {
     void bindArgs(@NonNull OrmaConnection conn, @NonNull SQLiteStatement statement, @NonNull Model model,
             boolean withoutAutoId);
 
+    /**
+     * Binds columns at {@code offset + 1} and later, which is used to insert multiple rows in a statement.
+     *
+     * @param conn          Used to retrieve instances that depends on a connection
+     * @param statement     What to bind columns
+     * @param model         The target model
+     * @param withoutAutoId If {@code true}, the primary key with {@link PrimaryKey#auto()} is omitted in the {@code INSERT}
+     *                      statement.
+     * @param offset        The number of bind args before the model's columns
+     */
+    void bindArgs(@NonNull OrmaConnection conn, @NonNull SQLiteStatement statement, @NonNull Model model,
+            boolean withoutAutoId, int offset);
+
     @NonNull
     Model newModelFromCursor(@NonNull OrmaConnection conn, @NonNull Cursor cursor, int offset);
+
+    /**
+     * @param model The target model
+     * @return The {@link ChangeTracker} field of the model, or {@code null} if it is not declared
+     */
+    @Nullable
+    ChangeTracker getChangeTracker(@NonNull Model model);
 }
@@ -19,24 +19,33 @@ package com.github.gfx.android.orma;
 import com.github.gfx.android.orma.exception.InvalidStatementException;
 import com.github.gfx.android.orma.exception.NoValueException;
 import com.github.gfx.android.orma.internal.OrmaConditionBase;
+import com.github.gfx.android.orma.internal.OrmaCursorIterator;
 import com.github.gfx.android.orma.internal.OrmaIterator;
+import com.github.gfx.android.orma.internal.OrmaKeysetIterator;
 
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.support.annotation.CheckResult;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import rx.Observable;
 import rx.Single;
 import rx.SingleSubscriber;
 import rx.Subscriber;
 import rx.functions.Action1;
+import rx.functions.Func1;
 import rx.functions.FuncN;
 
 public abstract class Selector<Model, S extends Selector<Model, ?>>
@@ -59,19 +68,59 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
 
     protected long page = -1;
 
+    /**
+     * Ordering terms given by {@link OrderSpec}s, which {@link #keysetIterator()} uses to seek the next batch.
+     */
+    protected final ArrayList<OrderSpec<Model>> orderSpecs = new ArrayList<>();
+
+    /**
+     * {@code true} if {@link #orderBy(CharSequence)} is called with opaque terms.
+     */
+    protected boolean hasOpaqueOrderingTerms = false;
+
+    /**
+     * {@link SingleAssociation} columns to load in advance by {@link #includes(ColumnDef)}.
+     */
+    protected final ArrayList<ColumnDef<Model, ?>> includes = new ArrayList<>();
+
+    /**
+     * Has-many associations to load by {@link #includes(HasManyDef)}.
+     */
+    protected final ArrayList<HasManyDef<Model, ?>> hasManyIncludes = new ArrayList<>();
+
     public Selector(@NonNull OrmaConnection conn) {
         super(conn);
     }
 
+    /**
+     * Creates a selector with the conditions of {@code condition}. If it is a selector, its ordering terms,
+     * limit, offset and includes are also copied, so that {@link #clone()} makes an independent copy of the query.
+     *
+     * @param condition A relation, selector, or other conditions
+     */
     public Selector(@NonNull OrmaConditionBase<Model, ?> condition) {
         super(condition);
+        if (condition instanceof Selector) {
+            @SuppressWarnings("unchecked")
+            Selector<Model, ?> selector = (Selector<Model, ?>) condition;
+            orderBy = selector.orderBy;
+            orderSpecs.addAll(selector.orderSpecs);
+            hasOpaqueOrderingTerms = selector.hasOpaqueOrderingTerms;
+            limit = selector.limit;
+            // page() is copied as the equivalent offset, so that the copy can be given another offset
+            offset = selector.page != -1 && selector.limit != -1 ? (selector.page - 1) * selector.limit
+                    : selector.offset;
+            includes.addAll(selector.includes);
+            hasManyIncludes.addAll(selector.hasManyIncludes);
+        }
         if (condition instanceof Relation) {
             @SuppressWarnings("unchecked")
             Relation<Model, ?> relation = (Relation<Model, ?>) condition;
-            CharSequence orderByTerm = relation.buildOrderingTerms();
-            if (orderByTerm != null) {
-                orderBy(orderByTerm);
+            for (OrderSpec<Model> orderSpec : relation.orderSpecs) {
+                orderBy(orderSpec);
             }
+            includes.addAll(relation.includes);
+            hasManyIncludes.addAll(relation.hasManyIncludes);
         }
     }
 
@@ -93,17 +142,57 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
 
     @SuppressWarnings("unchecked")
     public S orderBy(@NonNull CharSequence orderByTerm) {
+        appendOrderingTerm(orderByTerm);
+        hasOpaqueOrderingTerms = true;
+        return (S) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public S orderBy(@NonNull OrderSpec<Model> orderSpec) {
+        appendOrderingTerm(orderSpec.toString());
+        orderSpecs.add(orderSpec);
+        return (S) this;
+    }
+
+    private void appendOrderingTerm(@NonNull CharSequence orderByTerm) {
         if (orderBy == null) {
             orderBy = orderByTerm.toString();
         } else {
             orderBy += ", " + orderByTerm;
         }
+    }
+
+    /**
+     * Loads the models referred by a {@link SingleAssociation} column in advance, e.g.
+     * {@code selectFromBook().includes(Book_Schema.INSTANCE.publisher).toList()}. The referred models are read by
+     * {@code IN} queries for all the rows, instead of a query for each {@link SingleAssociation#value()}.
+     * It takes effect on {@link #toList()}, {@link #forEach(Action1)}, {@link #value()} and {@link #get(long)}.
+     * The iterators and {@link #executeAsObservable()} throw {@link IllegalStateException} with it.
+     *
+     * @param association A {@link SingleAssociation} column
+     * @return the receiver itself
+     */
+    @SuppressWarnings("unchecked")
+    public S includes(@NonNull ColumnDef<Model, ? extends SingleAssociation<?>> association) {
+        includes.add(association);
         return (S) this;
     }
 
+    /**
+     * Loads a has-many association declared by {@code @HasMany}, e.g.
+     * {@code selectFromPublisher().includes(Publisher_Schema.INSTANCE.books).toList()}. The children of all the rows
+     * are read by {@code IN} queries on the foreign key, grouped by the foreign key, and set to the rows
+     * in the order of their primary keys. It takes effect on {@link #toList()}, {@link #forEach(Action1)},
+     * {@link #value()} and {@link #get(long)}. The iterators and {@link #executeAsObservable()} throw
+     * {@link IllegalStateException} with it.
+     *
+     * @param hasMany A has-many association
+     * @return the receiver itself
+     */
     @SuppressWarnings("unchecked")
-    public S orderBy(@NonNull OrderSpec<Model> orderSpec) {
-        return orderBy(orderSpec.toString());
+    public S includes(@NonNull HasManyDef<Model, ?> hasMany) {
+        hasManyIncludes.add(hasMany);
+        return (S) this;
     }
 
     @SuppressWarnings("unchecked")
@@ -155,9 +244,14 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
 
     @IntRange(from = 0)
     public int count() {
-        String sql = SQLiteQueryBuilder.buildQueryString(
-                false, getSchema().getSelectFromTableClause(), countSelections, getWhereClause(), groupBy, null, null, null);
-        return (int) conn.rawQueryForLong(sql, getBindArgs());
+        List<WhereChunk> chunks = getWhereChunks(0, groupBy == null && having == null);
+        int count = 0;
+        for (WhereChunk chunk : chunks) {
+            String sql = SQLiteQueryBuilder.buildQueryString(false, getSchema().getSelectFromTableClause(),
+                    countSelections, chunk.whereClause, groupBy, null, null, null);
+            count += (int) conn.rawQueryForLong(sql, chunk.bindArgs);
+        }
+        return count;
     }
 
     /**
@@ -179,6 +273,27 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
         return count() == 0;
     }
 
+    /**
+     * Observes {@link #count()}. It emits the count on subscription, and then a new one each time the tables read by
+     * the query are modified and the count changes.
+     *
+     * @return An {@link Observable} that yields the count
+     * @see com.github.gfx.android.orma.internal.InvalidationTracker#invalidationsOf(Schema)
+     */
+    @CheckResult
+    @NonNull
+    public Observable<Integer> observeCount() {
+        final Selector<Model, ?> selector = clone();
+        return conn.getInvalidationTracker().invalidationsOf(getSchema())
+                .map(new Func1<Object, Integer>() {
+                    @Override
+                    public Integer call(Object o) {
+                        return selector.count();
+                    }
+                })
+                .distinctUntilChanged();
+    }
+
     @Nullable
     public Model valueOrNull() {
         return getOrNull(0);
@@ -195,8 +310,12 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
 
     @Nullable
     public Model getOrNull(@IntRange(from = 0) long position) {
-        return conn.querySingle(getSchema(), getSchema().getDefaultResultColumns(),
+        Model model = conn.querySingle(getSchema(), getSchema().getDefaultResultColumns(),
                 getWhereClause(), getBindArgs(), groupBy, having, orderBy, position);
+        if (model != null && hasIncludes()) {
+            loadIncludedAssociations(Collections.singletonList(model));
+        }
+        return model;
     }
 
     @NonNull
@@ -211,13 +330,116 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
     @CheckResult
     @NonNull
     public Cursor execute() {
-        return conn.rawQuery(buildQuery(), getBindArgs());
+        return executeWithColumns(getSchema().getDefaultResultColumns());
     }
 
+    /**
+     * Executes the query with {@code columns}. A condition with {@code IN (...)} of more than
+     * {@link Inserter#MAX_VARIABLE_NUMBER} values is run in chunks, whose results are concatenated into a cursor,
+     * if the query is neither ordered, limited nor grouped; otherwise the values are embedded in the query.
+     */
     @CheckResult
     @NonNull
     public Cursor executeWithColumns(@NonNull String... columns) {
-        return conn.rawQuery(buildQueryWithColumns(columns), getBindArgs());
+        boolean mergeable = groupBy == null && having == null && orderBy == null
+                && limit == -1 && offset == -1 && page == -1;
+        List<WhereChunk> chunks = getWhereChunks(0, mergeable);
+        if (chunks.size() == 1) {
+            return conn.rawQuery(buildQuery(columns, chunks.get(0).whereClause), chunks.get(0).bindArgs);
+        }
+
+        Cursor[] cursors = new Cursor[chunks.size()];
+        try {
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = conn.rawQuery(buildQuery(columns, chunks.get(i).whereClause), chunks.get(i).bindArgs);
+            }
+        } catch (RuntimeException e) {
+            for (Cursor cursor : cursors) {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+            throw e;
+        }
+        return new MergeCursor(cursors);
+    }
+
+    /**
+     * Creates a {@link Projection} that reads only {@code columns}, e.g.
+     * {@code selectFromTodo().select(Todo_Schema.INSTANCE.title, Todo_Schema.INSTANCE.id)}.
+     * It is useful to avoid reading large columns that you do not need.
+     *
+     * @param columns Columns to read
+     * @return A projection of the selector
+     */
+    @SafeVarargs
+    @CheckResult
+    @NonNull
+    public final Projection<Model> select(@NonNull ColumnDef<Model, ?>... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("No columns to select");
+        }
+        return new Projection<>(this, Arrays.asList(columns));
+    }
+
+    /**
+     * Reads a column into {@code long[]} without creating models. {@code NULL} is read as {@code 0}.
+     *
+     * @param column A column to read, e.g. the primary key
+     * @return Values of the column
+     */
+    @NonNull
+    public long[] pluckAsLongArray(@NonNull ColumnDef<Model, ?> column) {
+        Cursor cursor = executeWithColumns(column.getQualifiedName());
+        try {
+            long[] values = new long[cursor.getCount()];
+            for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+                values[pos] = cursor.getLong(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads a column into {@code double[]} without creating models. {@code NULL} is read as {@code 0.0}.
+     *
+     * @param column A column to read
+     * @return Values of the column
+     */
+    @NonNull
+    public double[] pluckAsDoubleArray(@NonNull ColumnDef<Model, ?> column) {
+        Cursor cursor = executeWithColumns(column.getQualifiedName());
+        try {
+            double[] values = new double[cursor.getCount()];
+            for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+                values[pos] = cursor.getDouble(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads a column into {@code String[]} without creating models. {@code NULL} is read as {@code null}.
+     *
+     * @param column A column to read
+     * @return Values of the column
+     */
+    @NonNull
+    public String[] pluckAsStringArray(@NonNull ColumnDef<Model, ?> column) {
+        Cursor cursor = executeWithColumns(column.getQualifiedName());
+        try {
+            String[] values = new String[cursor.getCount()];
+            for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+                values[pos] = cursor.getString(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -233,9 +455,13 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
      */
     @NonNull
     public String buildQueryWithColumns(@NonNull String... columns) {
+        return buildQuery(columns, getWhereClause());
+    }
+
+    String buildQuery(String[] columns, @Nullable String whereClause) {
         return SQLiteQueryBuilder.buildQueryString(
                 false, getSchema().getSelectFromTableClause(), columns,
-                getWhereClause(), groupBy, having, orderBy, getLimitClause());
+                whereClause, groupBy, having, orderBy, getLimitClause());
     }
 
     /**
@@ -245,26 +471,254 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
      */
     @NonNull
     public List<Model> toList() {
-        final ArrayList<Model> list = new ArrayList<>();
-        forEach(new Action1<Model>() {
-            @Override
-            public void call(Model item) {
-                list.add(item);
+        Cursor cursor = execute();
+        try {
+            List<Model> list = new ArrayList<>(cursor.getCount());
+            for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+                list.add(newModelFromCursor(cursor));
             }
-        });
-        return list;
+            loadIncludedAssociations(list);
+            return list;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    boolean hasIncludes() {
+        return !includes.isEmpty() || !hasManyIncludes.isEmpty();
+    }
+
+    void checkNoIncludes(String method) {
+        if (hasIncludes()) {
+            throw new IllegalStateException(method + " does not support includes(). Use toList() or forEach() instead.");
+        }
+    }
+
+    void loadIncludedAssociations(List<Model> models) {
+        for (ColumnDef<Model, ?> association : includes) {
+            loadSingleAssociations(association, models);
+        }
+        for (HasManyDef<Model, ?> hasMany : hasManyIncludes) {
+            loadHasMany(hasMany, models);
+        }
+    }
+
+    <Child> void loadHasMany(HasManyDef<Model, Child> hasMany, List<Model> models) {
+        ColumnDef<Model, ?> primaryKey = getSchema().getPrimaryKey();
+        Map<Object, List<Child>> childrenByKey = new HashMap<>();
+        for (Model model : models) {
+            Object key = normalizeKey(primaryKey.getSerialized(model));
+            List<Child> children = childrenByKey.get(key);
+            if (children == null) {
+                children = new ArrayList<>();
+                childrenByKey.put(key, children);
+            }
+            hasMany.set(model, children);
+        }
+        if (childrenByKey.isEmpty()) {
+            return;
+        }
+
+        Schema<Child> childSchema = hasMany.getChildSchema();
+        ColumnDef<Child, ?> foreignKey = hasMany.getForeignKey();
+        String orderBy = childSchema.getPrimaryKey().getQualifiedName();
+        List<Object> keys = new ArrayList<>(childrenByKey.keySet());
+        for (int i = 0; i < keys.size(); i += Inserter.MAX_VARIABLE_NUMBER) {
+            List<Object> chunk = keys.subList(i, Math.min(i + Inserter.MAX_VARIABLE_NUMBER, keys.size()));
+            StringBuilder whereClause = new StringBuilder(foreignKey.getQualifiedName()).append(" IN (");
+            Object[] whereArgs = new Object[chunk.size()];
+            for (int j = 0; j < chunk.size(); j++) {
+                whereClause.append(j == 0 ? "?" : ",?");
+                whereArgs[j] = chunk.get(j);
+            }
+            whereClause.append(')');
+
+            Cursor cursor = conn.query(childSchema, childSchema.getDefaultResultColumns(), whereClause.toString(),
+                    whereArgs, null, null, orderBy, null);
+            try {
+                while (cursor.moveToNext()) {
+                    Child child = childSchema.newModelFromCursor(conn, cursor, 0);
+                    List<Child> children = childrenByKey.get(normalizeKey(foreignKey.getSerialized(child)));
+                    if (children != null) {
+                        children.add(child);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Integer keys may be serialized as either {@code Integer} or {@code Long}.
+     */
+    static Object normalizeKey(Object key) {
+        if (key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        return key;
+    }
+
+    @SuppressWarnings("unchecked")
+    void loadSingleAssociations(ColumnDef<Model, ?> association, List<Model> models) {
+        Schema<Object> schema = null;
+        Map<Long, List<SingleAssociation<Object>>> associationsById = new HashMap<>();
+        for (Model model : models) {
+            SingleAssociation<Object> singleAssociation = (SingleAssociation<Object>) association.get(model);
+            if (singleAssociation == null || singleAssociation.schema == null) {
+                continue;
+            }
+            schema = singleAssociation.schema;
+            List<SingleAssociation<Object>> list = associationsById.get(singleAssociation.id);
+            if (list == null) {
+                list = new ArrayList<>();
+                associationsById.put(singleAssociation.id, list);
+            }
+            list.add(singleAssociation);
+        }
+        if (schema == null) {
+            return;
+        }
+
+        ColumnDef<Object, ?> primaryKey = schema.getPrimaryKey();
+        List<Long> ids = new ArrayList<>(associationsById.keySet());
+        for (int i = 0; i < ids.size(); i += Inserter.MAX_VARIABLE_NUMBER) {
+            List<Long> chunk = ids.subList(i, Math.min(i + Inserter.MAX_VARIABLE_NUMBER, ids.size()));
+            StringBuilder whereClause = new StringBuilder(primaryKey.getQualifiedName()).append(" IN (");
+            Object[] whereArgs = new Object[chunk.size()];
+            for (int j = 0; j < chunk.size(); j++) {
+                whereClause.append(j == 0 ? "?" : ",?");
+                whereArgs[j] = chunk.get(j);
+            }
+            whereClause.append(')');
+
+            Cursor cursor = conn.query(schema, schema.getDefaultResultColumns(), whereClause.toString(), whereArgs,
+                    null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    Object associatedModel = schema.newModelFromCursor(conn, cursor, 0);
+                    long id = ((Number) primaryKey.getSerialized(associatedModel)).longValue();
+                    for (SingleAssociation<Object> singleAssociation : associationsById.get(id)) {
+                        singleAssociation.preload(associatedModel);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Observes {@link #toList()}. It emits the list on subscription, and then a new one each time the tables read by
+     * the query, including those joined by direct associations, are modified and the result rows change.
+     * The rows are compared by the values in the cursor.
+     *
+     * @return An {@link Observable} that yields the list of models
+     * @see com.github.gfx.android.orma.internal.InvalidationTracker#invalidationsOf(Schema)
+     */
+    @CheckResult
+    @NonNull
+    public Observable<List<Model>> observeList() {
+        final Selector<Model, ?> selector = clone();
+        return conn.getInvalidationTracker().invalidationsOf(getSchema())
+                .map(new Func1<Object, ListWithValues<Model>>() {
+                    @Override
+                    public ListWithValues<Model> call(Object o) {
+                        return selector.toListWithValues();
+                    }
+                })
+                .distinctUntilChanged(new Func1<ListWithValues<Model>, List<Object>>() {
+                    @Override
+                    public List<Object> call(ListWithValues<Model> list) {
+                        return list.values;
+                    }
+                })
+                .map(new Func1<ListWithValues<Model>, List<Model>>() {
+                    @Override
+                    public List<Model> call(ListWithValues<Model> list) {
+                        return list;
+                    }
+                });
+    }
+
+    ListWithValues<Model> toListWithValues() {
+        Cursor cursor = execute();
+        try {
+            int columnCount = cursor.getColumnCount();
+            ListWithValues<Model> list = new ListWithValues<>(cursor.getCount(), columnCount);
+            while (cursor.moveToNext()) {
+                list.add(newModelFromCursor(cursor));
+                for (int i = 0; i < columnCount; i++) {
+                    list.values.add(getValue(cursor, i));
+                }
+            }
+            loadIncludedAssociations(list);
+            return list;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return A value of the column, which implements {@link Object#equals(Object)} by its content
+     */
+    @Nullable
+    static Object getValue(Cursor cursor, int columnIndex) {
+        switch (cursor.getType(columnIndex)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(columnIndex);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(columnIndex);
+            case Cursor.FIELD_TYPE_STRING:
+                return cursor.getString(columnIndex);
+            case Cursor.FIELD_TYPE_BLOB:
+                return ByteBuffer.wrap(cursor.getBlob(columnIndex));
+            default: // FIELD_TYPE_NULL
+                return null;
+        }
+    }
+
+    /**
+     * A list of models with the values of the rows they are made from, so that two results can be compared
+     * without comparing models, which may not implement {@link Object#equals(Object)}.
+     */
+    @SuppressWarnings("serial")
+    static class ListWithValues<Model> extends ArrayList<Model> {
+
+        final List<Object> values;
+
+        ListWithValues(int rowCount, int columnCount) {
+            super(rowCount);
+            values = new ArrayList<>(rowCount * columnCount);
+        }
     }
 
     /**
      * Executes a query and calls {@code Action1<Model>#call} for each model}.
+     * With {@link #includes(ColumnDef)}, models are read in chunks and the associations are loaded for each chunk.
      *
      * @param action An action called for each model in the iteration.
      */
     public void forEach(@NonNull Action1<Model> action) {
         Cursor cursor = execute();
         try {
+            if (!hasIncludes()) {
+                for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+                    action.call(newModelFromCursor(cursor));
+                }
+                return;
+            }
+
+            List<Model> chunk = new ArrayList<>(Inserter.MAX_VARIABLE_NUMBER);
             for (int pos = 0; cursor.moveToPosition(pos); pos++) {
-                action.call(newModelFromCursor(cursor));
+                chunk.add(newModelFromCursor(cursor));
+                if (chunk.size() == Inserter.MAX_VARIABLE_NUMBER || cursor.isLast()) {
+                    loadIncludedAssociations(chunk);
+                    for (Model model : chunk) {
+                        action.call(model);
+                    }
+                    chunk.clear();
+                }
             }
         } finally {
             cursor.close();
@@ -281,6 +735,7 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
         return Observable.create(new Observable.OnSubscribe<Model>() {
             @Override
             public void call(final Subscriber<? super Model> subscriber) {
+                checkNoIncludes("executeAsObservable()");
                 final Cursor cursor = execute();
                 try {
                     for (int pos = 0; !subscriber.isUnsubscribed() && cursor.moveToPosition(pos); pos++) {
@@ -304,6 +759,47 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
     @NonNull
     @Override
     public Iterator<Model> iterator() {
+        checkNoIncludes("iterator()");
         return new OrmaIterator<>(this);
     }
+
+    /**
+     * Returns an iterator which fetches rows in batches with keyset pagination, a.k.a. the seek method.
+     * Each batch starts just after the last row of the previous one ({@code WHERE (cols) > (last values)}),
+     * instead of {@code OFFSET}, so iterating the whole table costs linear time.
+     *
+     * The ordering is the {@link OrderSpec}s given by {@code orderBy*()} helpers, followed by the primary key
+     * (or {@code _rowid_}) as a tie-breaker. The ordering columns must not be {@code NULL}.
+     *
+     * @return An iterator with keyset pagination
+     */
+    @NonNull
+    public Iterator<Model> keysetIterator() {
+        checkNoIncludes("keysetIterator()");
+        if (hasOpaqueOrderingTerms) {
+            throw new InvalidStatementException("keysetIterator() requires orderBy(OrderSpec), not orderBy(CharSequence)");
+        }
+        if (groupBy != null || having != null) {
+            throw new InvalidStatementException("keysetIterator() does not support groupBy() nor having()");
+        }
+        if (limit != -1 || offset != -1 || page != -1) {
+            throw new InvalidStatementException("keysetIterator() does not support limit(), offset() nor page()");
+        }
+        return new OrmaKeysetIterator<>(this, orderSpecs);
+    }
+
+    /**
+     * Returns an iterator which walks a single cursor from the beginning to the end.
+     * Unlike {@link #iterator()}, it does not issue {@code SELECT COUNT(*)} in advance.
+     *
+     * The cursor is closed when the iteration reaches the end. Call {@link OrmaCursorIterator#close()} if you
+     * stop the iteration halfway.
+     *
+     * @return A closeable iterator with a single cursor
+     */
+    @NonNull
+    public OrmaCursorIterator<Model> streamingIterator() {
+        checkNoIncludes("streamingIterator()");
+        return new OrmaCursorIterator<>(this);
+    }
 }
@@ -25,6 +25,7 @@ import com.github.gfx.android.orma.internal.Schemas;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import rx.Single;
 import rx.SingleSubscriber;
@@ -41,24 +42,38 @@ public class SingleAssociation<Model> implements Parcelable {
 
     final Single<Model> single;
 
+    /**
+     * The schema to load the model lazily, or {@code null} if the model is given.
+     */
+    @Nullable
+    final Schema<Model> schema;
+
+    /**
+     * The model loaded in advance by {@link Selector#includes(ColumnDef)}.
+     */
+    volatile Model preloaded;
+
     public SingleAssociation(long id, @NonNull Model model) {
         this.id = id;
         this.single = Single.just(model);
+        this.schema = null;
     }
 
     public SingleAssociation(long id, @NonNull Single<Model> single) {
         this.id = id;
         this.single = single;
+        this.schema = null;
     }
 
     public SingleAssociation(@NonNull final OrmaConnection conn, @NonNull final Schema<Model> schema, final long id) {
         this.id = id;
+        this.schema = schema;
         single = Single.create(new Single.OnSubscribe<Model>() {
             @Override
             public void call(SingleSubscriber<? super Model> subscriber) {
                 ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
                 String whereClause = primaryKey.getEscapedName() + " = ?";
-                String[] whereArgs = {String.valueOf(id)};
+                Object[] whereArgs = {id};
                 Model model = conn.querySingle(schema, schema.getDefaultResultColumns(),
                         whereClause, whereArgs, null, null, null, 0);
                 if (model != null) {
@@ -100,7 +115,12 @@ public class SingleAssociation<Model> implements Parcelable {
 
     @NonNull
     public Single<Model> observable() {
-        return single;
+        Model model = preloaded;
+        return model != null ? Single.just(model) : single;
+    }
+
+    void preload(@NonNull Model model) {
+        preloaded = model;
     }
 
     /**
@@ -110,7 +130,7 @@ public class SingleAssociation<Model> implements Parcelable {
      */
     @NonNull
     public Model value() throws NoValueException {
-        return single.toBlocking().value();
+        return observable().toBlocking().value();
     }
 
     @Override
@@ -148,7 +168,7 @@ public class SingleAssociation<Model> implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        Model model = single.toBlocking().value();
+        Model model = value();
         if (!(model instanceof Parcelable)) {
             throw new InvalidModelException("Orma model " + model.getClass() + " is not a Parcelable");
         }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link QueryListener} that logs statements taking longer than a threshold. Override
+ * {@link #onSlowQuery(QueryEvent)} to report them in other ways.
+ */
+public class SlowQueryLogger implements QueryListener {
+
+    final long thresholdNanos;
+
+    /**
+     * @param thresholdMillis Statements taking this or longer are logged
+     */
+    public SlowQueryLogger(@IntRange(from = 0) long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    @Override
+    public void onQuery(@NonNull QueryEvent event) {
+        if (event.elapsedNanos >= thresholdNanos) {
+            onSlowQuery(event);
+        }
+    }
+
+    protected void onSlowQuery(@NonNull QueryEvent event) {
+        Log.w(OrmaConnection.TAG, "slow query: " + event.getElapsedMillis() + "ms, "
+                + (event.rows >= 0 ? event.rows + " rows, " : "")
+                + "[" + event.threadName + "] " + event.sql);
+    }
+}
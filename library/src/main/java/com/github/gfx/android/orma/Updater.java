@@ -18,16 +18,53 @@ package com.github.gfx.android.orma;
 import com.github.gfx.android.orma.internal.OrmaConditionBase;
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import rx.Single;
 import rx.SingleSubscriber;
 
+/**
+ * Updates rows with the values assigned by the typed setters of generated subclasses.
+ *
+ * The values are bound to a {@link SQLiteStatement} in the statement cache, whose SQL is built once
+ * for each set of assigned columns.
+ */
 public abstract class Updater<Model, U extends Updater<Model, ?>> extends OrmaConditionBase<Model, U> {
 
+    static final byte TYPE_NULL = 1;
+
+    static final byte TYPE_LONG = 2;
+
+    static final byte TYPE_DOUBLE = 3;
+
+    static final byte TYPE_STRING = 4;
+
+    static final byte TYPE_BLOB = 5;
+
+    /**
+     * Values put into this directly, which makes the updater fall back to {@link SQLiteDatabase#update}.
+     */
     final protected ContentValues contents = new ContentValues();
 
+    // the columns assigned by the setters, indexed by the position in Schema#getColumns()
+    final BitSet assignedColumns = new BitSet();
+
+    byte[] valueTypes;
+
+    long[] longValues;
+
+    double[] doubleValues;
+
+    Object[] objectValues;
+
     public Updater(@NonNull OrmaConnection conn) {
         super(conn);
     }
@@ -36,16 +73,212 @@ public abstract class Updater<Model, U extends Updater<Model, ?>> extends OrmaCo
         super(relation);
     }
 
+    /**
+     * @return A new {@link ContentValues} that contains the assigned values. Changing it does not affect the updater.
+     */
     @NonNull
     public ContentValues getContentValues() {
-        return contents;
+        ContentValues values = new ContentValues(contents);
+        copyAssignedValuesTo(values);
+        return values;
+    }
+
+    protected void putNull(int columnIndex) {
+        assign(columnIndex, TYPE_NULL);
+    }
+
+    protected void putLong(int columnIndex, long value) {
+        assign(columnIndex, TYPE_LONG);
+        if (longValues == null) {
+            longValues = new long[valueTypes.length];
+        }
+        longValues[columnIndex] = value;
+    }
+
+    protected void putDouble(int columnIndex, double value) {
+        assign(columnIndex, TYPE_DOUBLE);
+        if (doubleValues == null) {
+            doubleValues = new double[valueTypes.length];
+        }
+        doubleValues[columnIndex] = value;
+    }
+
+    protected void putString(int columnIndex, @Nullable String value) {
+        putObject(columnIndex, value != null ? TYPE_STRING : TYPE_NULL, value);
+    }
+
+    protected void putBlob(int columnIndex, @Nullable byte[] value) {
+        putObject(columnIndex, value != null ? TYPE_BLOB : TYPE_NULL, value);
+    }
+
+    void putSerialized(int columnIndex, @Nullable Object value) {
+        if (value == null) {
+            putNull(columnIndex);
+        } else if (value instanceof Boolean) {
+            putLong(columnIndex, (Boolean) value ? 1 : 0);
+        } else if (value instanceof Float || value instanceof Double) {
+            putDouble(columnIndex, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            putLong(columnIndex, ((Number) value).longValue());
+        } else if (value instanceof byte[]) {
+            putBlob(columnIndex, (byte[]) value);
+        } else {
+            putString(columnIndex, value.toString());
+        }
+    }
+
+    private void putObject(int columnIndex, byte type, Object value) {
+        assign(columnIndex, type);
+        if (objectValues == null) {
+            objectValues = new Object[valueTypes.length];
+        }
+        objectValues[columnIndex] = value;
+    }
+
+    private void assign(int columnIndex, byte type) {
+        if (valueTypes == null) {
+            valueTypes = new byte[getSchema().getColumns().size()];
+        }
+        valueTypes[columnIndex] = type;
+        assignedColumns.set(columnIndex);
+    }
+
+    @Nullable
+    Object getAssignedValue(int columnIndex) {
+        switch (valueTypes[columnIndex]) {
+            case TYPE_LONG:
+                return longValues[columnIndex];
+            case TYPE_DOUBLE:
+                return doubleValues[columnIndex];
+            case TYPE_STRING:
+            case TYPE_BLOB:
+                return objectValues[columnIndex];
+            default:
+                return null;
+        }
+    }
+
+    void copyAssignedValuesTo(ContentValues values) {
+        List<ColumnDef<Model, ?>> columns = getSchema().getColumns();
+        for (int i = assignedColumns.nextSetBit(0); i >= 0; i = assignedColumns.nextSetBit(i + 1)) {
+            String name = columns.get(i).getEscapedName();
+            switch (valueTypes[i]) {
+                case TYPE_LONG:
+                    values.put(name, longValues[i]);
+                    break;
+                case TYPE_DOUBLE:
+                    values.put(name, doubleValues[i]);
+                    break;
+                case TYPE_STRING:
+                    values.put(name, (String) objectValues[i]);
+                    break;
+                case TYPE_BLOB:
+                    values.put(name, (byte[]) objectValues[i]);
+                    break;
+                default:
+                    values.putNull(name);
+            }
+        }
     }
 
     /**
+     * A condition with {@code IN (...)} of more than {@link Inserter#MAX_VARIABLE_NUMBER} values is run in chunks
+     * in a transaction, or with the values embedded if it is {@code NOT IN} or joined by {@code or()}.
+     *
      * @return The number of rows updated.
      */
     public int execute() {
-        return conn.update(getSchema(), contents, getWhereClause(), getBindArgs());
+        // values put into the contents directly make it fall back to SQLiteDatabase#update()
+        final ContentValues values = contents.size() != 0 || assignedColumns.isEmpty() ? getContentValues() : null;
+        final List<WhereChunk> chunks = getWhereChunks(
+                values != null ? values.size() : assignedColumns.cardinality(), true);
+        if (chunks.size() == 1) {
+            return execute(values, chunks.get(0));
+        }
+
+        final int[] updatedRows = {0};
+        conn.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                for (WhereChunk chunk : chunks) {
+                    updatedRows[0] += execute(values, chunk);
+                }
+            }
+        });
+        return updatedRows[0];
+    }
+
+    int execute(@Nullable ContentValues values, WhereChunk chunk) {
+        if (values != null) {
+            return conn.update(getSchema(), values, chunk.whereClause, toStrings(chunk.bindArgs));
+        }
+
+        Schema<Model> schema = getSchema();
+        String whereClause = chunk.whereClause;
+        Object[] whereArgs = chunk.bindArgs;
+        String sql = whereClause != null ? getUpdateStatement(schema) + " WHERE " + whereClause
+                : getUpdateStatement(schema);
+
+        if (conn.trace) {
+            conn.trace(sql, buildTraceArgs(whereArgs));
+        }
+
+        SQLiteDatabase db = conn.getWritableDatabase();
+        // a statement with embedded values is unique, and would only push others out of the cache
+        SQLiteStatement statement = chunk.hasLiterals ? db.compileStatement(sql) : conn.acquireStatement(db, sql);
+        try {
+            int index = 1;
+            for (int i = assignedColumns.nextSetBit(0); i >= 0; i = assignedColumns.nextSetBit(i + 1)) {
+                bindAssignedValue(statement, index++, i);
+            }
+            OrmaConnection.bindAllArgs(statement, index, whereArgs);
+            long t0 = conn.startQuery();
+            int updatedRows = statement.executeUpdateDelete();
+            conn.endQuery(sql, index - 1 + OrmaConnection.countArgs(whereArgs), t0, updatedRows);
+            conn.invalidationTracker.notifyChanged(schema);
+            return updatedRows;
+        } finally {
+            if (chunk.hasLiterals) {
+                statement.close();
+            } else {
+                conn.releaseStatement(sql, statement);
+            }
+        }
+    }
+
+    /**
+     * Updates the columns of the model changed since it is loaded, in the row identified by its primary key.
+     *
+     * @see Relation#update(Object)
+     */
+    int executeWithModel(@NonNull Model model) {
+        Schema<Model> schema = getSchema();
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        ChangeTracker tracker = schema.getChangeTracker(model);
+
+        List<ColumnDef<Model, ?>> columns = schema.getColumns();
+        List<ColumnDef<Model, ?>> changedColumns = tracker != null ? tracker.getChangedColumns(schema, model) : columns;
+        for (ColumnDef<Model, ?> column : changedColumns) {
+            if (column != primaryKey) {
+                putSerialized(columns.indexOf(column), ChangeTracker.getSerialized(column, model));
+            }
+        }
+        if (assignedColumns.isEmpty()) {
+            return 0;
+        }
+
+        // the conditions given by the relation are kept
+        if (whereClause != null) {
+            whereClause.insert(0, '(').append(')');
+        }
+        whereConjunction = " AND ";
+        where(primaryKey, "=", primaryKey.getSerialized(model));
+
+        int updatedRows = execute();
+        if (updatedRows != 0) {
+            ChangeTracker.onWritten(schema, model);
+        }
+        return updatedRows;
     }
 
     @CheckResult
@@ -58,4 +291,66 @@ public abstract class Updater<Model, U extends Updater<Model, ?>> extends OrmaCo
             }
         });
     }
+
+    String getUpdateStatement(Schema<Model> schema) {
+        String table = schema.getEscapedTableName();
+        ConcurrentHashMap<BitSet, String> statements = conn.updateStatements.get(table);
+        if (statements == null) {
+            statements = new ConcurrentHashMap<>();
+            ConcurrentHashMap<BitSet, String> existing = conn.updateStatements.putIfAbsent(table, statements);
+            if (existing != null) {
+                statements = existing;
+            }
+        }
+
+        String sql = statements.get(assignedColumns);
+        if (sql == null) {
+            List<ColumnDef<Model, ?>> columns = schema.getColumns();
+            StringBuilder sb = new StringBuilder();
+            sb.append("UPDATE ").append(table).append(" SET ");
+            int start = sb.length();
+            for (int i = assignedColumns.nextSetBit(0); i >= 0; i = assignedColumns.nextSetBit(i + 1)) {
+                if (sb.length() != start) {
+                    sb.append(',');
+                }
+                sb.append(columns.get(i).getEscapedName()).append(" = ?");
+            }
+            sql = sb.toString();
+            // the key must be copied because assignedColumns is mutable
+            statements.putIfAbsent((BitSet) assignedColumns.clone(), sql);
+        }
+        return sql;
+    }
+
+    void bindAssignedValue(SQLiteStatement statement, int index, int columnIndex) {
+        switch (valueTypes[columnIndex]) {
+            case TYPE_LONG:
+                statement.bindLong(index, longValues[columnIndex]);
+                break;
+            case TYPE_DOUBLE:
+                statement.bindDouble(index, doubleValues[columnIndex]);
+                break;
+            case TYPE_STRING:
+                statement.bindString(index, (String) objectValues[columnIndex]);
+                break;
+            case TYPE_BLOB:
+                statement.bindBlob(index, (byte[]) objectValues[columnIndex]);
+                break;
+            default:
+                statement.bindNull(index);
+        }
+    }
+
+    Object[] buildTraceArgs(@Nullable Object[] whereArgs) {
+        int whereArgsSize = whereArgs != null ? whereArgs.length : 0;
+        Object[] args = new Object[assignedColumns.cardinality() + whereArgsSize];
+        int n = 0;
+        for (int i = assignedColumns.nextSetBit(0); i >= 0; i = assignedColumns.nextSetBit(i + 1)) {
+            args[n++] = getAssignedValue(i);
+        }
+        if (whereArgs != null) {
+            System.arraycopy(whereArgs, 0, args, n, whereArgsSize);
+        }
+        return args;
+    }
 }
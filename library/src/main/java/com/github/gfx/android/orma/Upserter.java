@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import com.github.gfx.android.orma.annotation.OnConflict;
+import com.github.gfx.android.orma.exception.InvalidStatementException;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+import rx.Single;
+import rx.SingleSubscriber;
+
+/**
+ * Inserts a model, or updates the non-key columns of the row with the same primary key if it exists.
+ * Unlike {@code INSERT OR REPLACE}, which {@link Relation#upserter()} uses, it does not delete the existing row, so
+ * that {@code ON DELETE} actions are not triggered and the row id is kept.
+ *
+ * It uses {@code INSERT ... ON CONFLICT DO UPDATE} on SQLite 3.24.0 or later, and {@code UPDATE} followed by
+ * {@code INSERT} if no rows are updated in a transaction otherwise. A model with the zero auto-value primary key is
+ * just inserted.
+ */
+public class Upserter<Model> {
+
+    final OrmaConnection conn;
+
+    final Schema<Model> schema;
+
+    final ColumnDef<Model, ?> primaryKey;
+
+    final String insertSql;
+
+    final String insertWithoutAutoIdSql;
+
+    final String updateSql;
+
+    final String upsertSql;
+
+    public Upserter(@NonNull OrmaConnection conn, @NonNull Schema<Model> schema) {
+        this.conn = conn;
+        this.schema = schema;
+        this.primaryKey = schema.getPrimaryKey();
+
+        List<ColumnDef<Model, ?>> columns = schema.getColumns();
+        if (columns.isEmpty() || columns.get(columns.size() - 1) != primaryKey) {
+            throw new InvalidStatementException("Upserter requires @PrimaryKey: " + schema.getModelClass());
+        }
+
+        insertSql = schema.getInsertStatement(OnConflict.NONE, false);
+        insertWithoutAutoIdSql = schema.getInsertStatement(OnConflict.NONE, true);
+
+        // the primary key is the last column, which is the same order as Schema#bindArgs()
+        StringBuilder assignments = new StringBuilder();
+        StringBuilder upsertAssignments = new StringBuilder();
+        for (ColumnDef<Model, ?> column : columns) {
+            if (column == primaryKey) {
+                continue;
+            }
+            if (assignments.length() != 0) {
+                assignments.append(',');
+                upsertAssignments.append(',');
+            }
+            String name = column.getEscapedName();
+            assignments.append(name).append(" = ?");
+            upsertAssignments.append(name).append(" = excluded.").append(name);
+        }
+        if (assignments.length() == 0) {
+            // no columns to update
+            updateSql = null;
+            upsertSql = schema.getInsertStatement(OnConflict.IGNORE, false);
+        } else {
+            updateSql = "UPDATE " + schema.getEscapedTableName() + " SET " + assignments
+                    + " WHERE " + primaryKey.getEscapedName() + " = ?";
+            upsertSql = insertSql + " ON CONFLICT(" + primaryKey.getEscapedName() + ") DO UPDATE SET "
+                    + upsertAssignments;
+        }
+    }
+
+    /**
+     * Upserts a model.
+     *
+     * @param model A model to upsert
+     * @return The row id of the inserted or updated row
+     */
+    public long execute(@NonNull final Model model) {
+        if (isNewModel(model)) {
+            return executeStatement(insertWithoutAutoIdSql, model, true, false);
+        }
+        if (conn.supportsUpsert()) {
+            executeStatement(upsertSql, model, false, false);
+            return getRowId(model);
+        }
+
+        SQLiteDatabase db = conn.getWritableDatabase();
+        if (db.inTransaction()) {
+            return updateOrInsert(model);
+        }
+        final long[] rowId = new long[1];
+        conn.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                rowId[0] = updateOrInsert(model);
+            }
+        });
+        return rowId[0];
+    }
+
+    /**
+     * Upserts models in a transaction. If the current thread is already in a transaction, they are upserted in it.
+     *
+     * @param models Models to upsert
+     */
+    public void executeAll(@NonNull final Iterable<Model> models) {
+        SQLiteDatabase db = conn.getWritableDatabase();
+        if (db.inTransaction()) {
+            for (Model model : models) {
+                execute(model);
+            }
+            return;
+        }
+        conn.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                for (Model model : models) {
+                    execute(model);
+                }
+            }
+        });
+    }
+
+    /**
+     * {@link Single} wrapper to {@link #execute(Object)}.
+     *
+     * @param model A model to upsert
+     * @return A {@link Single} that yields the row id
+     */
+    @CheckResult
+    @NonNull
+    public Single<Long> executeAsObservable(@NonNull final Model model) {
+        return Single.create(new Single.OnSubscribe<Long>() {
+            @Override
+            public void call(SingleSubscriber<? super Long> subscriber) {
+                subscriber.onSuccess(execute(model));
+            }
+        });
+    }
+
+    boolean isNewModel(Model model) {
+        if (!primaryKey.isAutoValue()) {
+            return false;
+        }
+        Object id = primaryKey.getSerialized(model);
+        return id instanceof Number && ((Number) id).longValue() == 0L;
+    }
+
+    long updateOrInsert(Model model) {
+        if (updateSql != null) {
+            long updatedRows = executeStatement(updateSql, model, false, true);
+            if (updatedRows != 0) {
+                return getRowId(model);
+            }
+        } else if (conn.rawQueryForLong("SELECT COUNT(*) FROM " + schema.getEscapedTableName()
+                + " WHERE " + primaryKey.getEscapedName() + " = ?", primaryKey.getSerialized(model)) != 0) {
+            return getRowId(model);
+        }
+        return executeStatement(insertSql, model, false, false);
+    }
+
+    /**
+     * @return The last inserted row id for {@code INSERT}, or the number of rows changed for {@code UPDATE}
+     */
+    long executeStatement(String sql, Model model, boolean withoutAutoId, boolean update) {
+        if (conn.trace) {
+            conn.trace(sql, schema.convertToArgs(conn, model, withoutAutoId));
+        }
+        SQLiteDatabase db = conn.getWritableDatabase();
+        SQLiteStatement statement = conn.acquireStatement(db, sql);
+        try {
+            schema.bindArgs(conn, statement, model, withoutAutoId);
+            long t0 = conn.startQuery();
+            long result;
+            if (update) {
+                result = statement.executeUpdateDelete();
+            } else {
+                result = statement.executeInsert();
+            }
+            if (conn.queryListeners.length != 0) {
+                conn.endQuery(sql, Inserter.countPlaceholders(sql), t0, update ? result : 1);
+            }
+            conn.invalidationTracker.notifyChanged(schema);
+            if (!update || result != 0) {
+                ChangeTracker.onWritten(schema, model);
+            }
+            return result;
+        } finally {
+            conn.releaseStatement(sql, statement);
+        }
+    }
+
+    long getRowId(Model model) {
+        Object id = primaryKey.getSerialized(model);
+        if (primaryKey.storageType.equals("INTEGER") && id instanceof Number) {
+            // the INTEGER PRIMARY KEY is an alias for the rowid
+            return ((Number) id).longValue();
+        }
+        return conn.rawQueryForLong("SELECT _rowid_ FROM " + schema.getEscapedTableName()
+                + " WHERE " + primaryKey.getEscapedName() + " = ?", id);
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import rx.Completable;
+import rx.CompletableSubscriber;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.plugins.RxJavaHooks;
+
+/**
+ * A queue of write tasks executed by a dedicated writer thread, which is created by
+ * {@link OrmaConnection#getWriteQueue()}.
+ *
+ * The writer thread drains the pending tasks, up to {@link OrmaDatabaseBuilderBase#writeQueueMaxBatchSize(int)},
+ * and runs them in one transaction (group commit), so that writes from many threads do not contend for the lock
+ * of the database and do not commit one by one. Each task runs in its own savepoint: if a task throws an exception,
+ * only its changes are rolled back and the others are committed.
+ *
+ * A batch holds the lock of the database while it runs, so it is committed as soon as its tasks take longer than
+ * {@link OrmaDatabaseBuilderBase#writeQueueMaxBatchMillis(long)}, and the rest of them go to the next batch.
+ * Tasks are not interrupted, so a slow task still delays the others by its own duration; keep tasks short.
+ *
+ * Results are delivered in the writer thread after the transaction ends. An exception thrown by a subscriber,
+ * or by a {@link QueryListener} after the commit, is reported to {@link RxJavaHooks#onError(Throwable)}, and the
+ * writer thread keeps running.
+ * Tasks must not begin transactions by themselves, because a nested transaction that fails makes the whole batch
+ * roll back; {@link Inserter#executeAll(Iterable)} and the other helpers that reuse the current transaction are fine.
+ *
+ * {@link OrmaConnection#close()} stops the writer thread after the running batch, and the tasks that are pending
+ * or submitted after that fail with {@link IllegalStateException}.
+ */
+public class WriteQueue {
+
+    static final String SAVEPOINT = "orma_write_queue";
+
+    final OrmaConnection conn;
+
+    final int maxBatchSize;
+
+    final long maxBatchNanos;
+
+    final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+
+    final Thread writerThread;
+
+    volatile boolean closed = false;
+
+    WriteQueue(@NonNull OrmaConnection conn, int maxBatchSize, long maxBatchMillis) {
+        this.conn = conn;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchMillis);
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "Orma-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @param task A write task
+     * @return A {@link Completable} that submits the task when subscribed, and completes when it is committed
+     */
+    @CheckResult
+    @NonNull
+    public Completable submit(@NonNull final Runnable task) {
+        return Completable.create(new Completable.OnSubscribe() {
+            @Override
+            public void call(final CompletableSubscriber subscriber) {
+                enqueue(new Task<Void>() {
+                    @Override
+                    Void call() {
+                        task.run();
+                        return null;
+                    }
+
+                    @Override
+                    void onSuccess(Void result) {
+                        subscriber.onCompleted();
+                    }
+
+                    @Override
+                    void onError(Throwable e) {
+                        subscriber.onError(e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param task A write task that returns a value, e.g. the row id of a model inserted
+     * @return A {@link Single} that submits the task when subscribed, and yields the value when it is committed
+     */
+    @CheckResult
+    @NonNull
+    public <T> Single<T> submit(@NonNull final Callable<T> task) {
+        return Single.create(new Single.OnSubscribe<T>() {
+            @Override
+            public void call(final SingleSubscriber<? super T> subscriber) {
+                enqueue(new Task<T>() {
+                    @Override
+                    T call() throws Exception {
+                        return task.call();
+                    }
+
+                    @Override
+                    void onSuccess(T result) {
+                        subscriber.onSuccess(result);
+                    }
+
+                    @Override
+                    void onError(Throwable e) {
+                        subscriber.onError(e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return The number of tasks waiting for the writer thread
+     */
+    public int getPendingTaskCount() {
+        return queue.size();
+    }
+
+    void enqueue(Task<?> task) {
+        if (closed) {
+            task.onError(newClosedException());
+            return;
+        }
+        queue.add(task);
+        if (closed) {
+            // closed while adding the task, which the writer thread may have missed
+            failPendingTasks();
+        }
+    }
+
+    /**
+     * Stops the writer thread after the running batch, and fails the pending tasks.
+     */
+    void close() {
+        closed = true;
+        writerThread.interrupt();
+        if (Thread.currentThread() != writerThread) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        failPendingTasks();
+    }
+
+    void failPendingTasks() {
+        List<Task<?>> tasks = new ArrayList<>();
+        queue.drainTo(tasks);
+        deliver(tasks, newClosedException());
+    }
+
+    static IllegalStateException newClosedException() {
+        return new IllegalStateException("The connection of the write queue is closed");
+    }
+
+    void loop() {
+        List<Task<?>> batch = new ArrayList<>();
+        // the interrupt by close() may be cleared by SQLite in a batch, so the flag is checked as well
+        while (!closed) {
+            if (batch.isEmpty()) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            int done = batch.size();
+            try {
+                done = runBatch(batch);
+            } catch (Throwable e) {
+                // the writer thread must survive anything to run the following tasks
+                RxJavaHooks.onError(e);
+            } finally {
+                batch.subList(0, done).clear();
+            }
+        }
+        deliver(batch, newClosedException());
+        failPendingTasks();
+    }
+
+    /**
+     * Runs tasks from the head of {@code batch} in a transaction, until they take longer than {@link #maxBatchNanos},
+     * and delivers their results.
+     *
+     * @return The number of the tasks run and delivered, which is at least one
+     */
+    int runBatch(List<Task<?>> batch) {
+        List<Task<?>> done = batch;
+        Throwable batchError = null;
+        try {
+            SQLiteDatabase db;
+            long t0;
+            long t1;
+            try {
+                db = conn.getWritableDatabase();
+                conn.trace("begin transaction (write queue)", null);
+                t0 = conn.startQuery();
+                conn.beginTransaction(db);
+                t1 = conn.startQuery();
+            } catch (Throwable e) {
+                batchError = e;
+                return done.size();
+            }
+
+            long deadline = System.nanoTime() + maxBatchNanos;
+            try {
+                int n = 0;
+                while (n < batch.size() && (n == 0 || System.nanoTime() < deadline)) {
+                    runInSavepoint(db, batch.get(n));
+                    n++;
+                }
+                done = batch.subList(0, n);
+                db.setTransactionSuccessful();
+            } catch (Throwable e) {
+                batchError = e;
+            }
+
+            boolean committed = false;
+            try {
+                db.endTransaction();
+                committed = batchError == null;
+            } catch (Throwable e) {
+                if (batchError == null) {
+                    batchError = e;
+                }
+            }
+
+            // the result of the tasks is settled, so errors from here on are not theirs
+            try {
+                conn.invalidationTracker.endTransaction(committed);
+                conn.trace("end transaction (write queue)", null);
+                conn.endTransactionQuery("transaction (write queue)", t0, t1);
+            } catch (Throwable e) {
+                RxJavaHooks.onError(e);
+            }
+            return done.size();
+        } finally {
+            deliver(done, batchError);
+        }
+    }
+
+    static void deliver(List<Task<?>> tasks, @Nullable Throwable batchError) {
+        for (Task<?> task : tasks) {
+            try {
+                task.deliver(batchError);
+            } catch (Throwable e) {
+                // thrown by the subscriber, which must not prevent the other tasks from being delivered
+                RxJavaHooks.onError(e);
+            }
+        }
+    }
+
+    void runInSavepoint(SQLiteDatabase db, Task<?> task) {
+        conn.execSQL(db, "SAVEPOINT " + SAVEPOINT);
+        try {
+            task.run();
+        } catch (Throwable e) {
+            task.error = e;
+            // Since API 16, SQLiteSession takes a statement whose first three letters are "ROL"
+            // (DatabaseUtils#getSqlStatementType()) as the end of the transaction, so the comment is required to
+            // roll back to the savepoint. It is the behavior of API 16 to 24 (the targetSdkVersion), which
+            // QueryTest#writeQueue() runs on with Robolectric (API 21); API 15 runs the statement as is.
+            // If a later version looks through the comment, the transaction ends here, and the batch fails below
+            // instead of committing the changes of the failing task.
+            conn.execSQL(db, "/* savepoint */ ROLLBACK TO " + SAVEPOINT);
+            if (!db.inTransaction()) {
+                throw new IllegalStateException("ROLLBACK TO " + SAVEPOINT + " ended the transaction", e);
+            }
+        }
+        conn.execSQL(db, "RELEASE " + SAVEPOINT);
+    }
+
+    abstract static class Task<T> {
+
+        T result;
+
+        Throwable error;
+
+        abstract T call() throws Exception;
+
+        abstract void onSuccess(T result);
+
+        abstract void onError(Throwable e);
+
+        void run() throws Exception {
+            result = call();
+        }
+
+        void deliver(@Nullable Throwable batchError) {
+            if (error != null) {
+                onError(error);
+            } else if (batchError != null) {
+                onError(batchError);
+            } else {
+                onSuccess(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.internal;
+
+import com.github.gfx.android.orma.AssociationDef;
+import com.github.gfx.android.orma.ColumnDef;
+import com.github.gfx.android.orma.Schema;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.plugins.RxJavaHooks;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
+import rx.subjects.SerializedSubject;
+import rx.subjects.Subject;
+
+/**
+ * Records tables modified by a connection, and notifies them to observers.
+ *
+ * Modifications in a transaction are coalesced into one event, which is emitted after the outermost transaction is
+ * committed, and discarded if it is rolled back. Other modifications are notified immediately. Events are emitted in
+ * the thread that modifies the database. Because the changes have already been written, an exception thrown by an
+ * observer does not propagate to the writer, nor prevent the other observers from being notified; it is reported to
+ * {@link RxJavaHooks#onError(Throwable)} instead.
+ */
+public class InvalidationTracker {
+
+    /**
+     * The interval to coalesce bursts of modifications for {@link #invalidationsOf(Schema)}.
+     */
+    public static final long DEBOUNCE_MILLIS = 50;
+
+    static class TransactionState {
+
+        int depth = 0;
+
+        boolean failed = false;
+
+        final Set<Schema<?>> tables = new HashSet<>();
+    }
+
+    final Subject<Set<Schema<?>>, Set<Schema<?>>> subject = new SerializedSubject<>(
+            PublishSubject.<Set<Schema<?>>>create());
+
+    final ThreadLocal<TransactionState> transactionState = new ThreadLocal<TransactionState>() {
+        @Override
+        protected TransactionState initialValue() {
+            return new TransactionState();
+        }
+    };
+
+    public void beginTransaction() {
+        transactionState.get().depth++;
+    }
+
+    /**
+     * @param successful {@code false} if the transaction is rolled back, which also rolls back the outer ones.
+     */
+    public void endTransaction(boolean successful) {
+        TransactionState state = transactionState.get();
+        if (state.depth == 0) {
+            throw new IllegalStateException("endTransaction() without beginTransaction()");
+        }
+        if (!successful) {
+            state.failed = true;
+        }
+        if (--state.depth == 0) {
+            Set<Schema<?>> tables = null;
+            if (!state.failed && !state.tables.isEmpty()) {
+                tables = Collections.unmodifiableSet(new HashSet<>(state.tables));
+            }
+            state.failed = false;
+            state.tables.clear();
+            if (tables != null) {
+                subject.onNext(tables);
+            }
+        }
+    }
+
+    public void notifyChanged(@NonNull Schema<?> schema) {
+        TransactionState state = transactionState.get();
+        if (state.depth > 0) {
+            state.tables.add(schema);
+        } else {
+            subject.onNext(Collections.<Schema<?>>singleton(schema));
+        }
+    }
+
+    public void notifyChanged(@NonNull Collection<? extends Schema<?>> schemas) {
+        TransactionState state = transactionState.get();
+        if (state.depth > 0) {
+            state.tables.addAll(schemas);
+        } else if (!schemas.isEmpty()) {
+            subject.onNext(Collections.unmodifiableSet(new HashSet<Schema<?>>(schemas)));
+        }
+    }
+
+    @NonNull
+    public Observable<Set<Schema<?>>> asObservable() {
+        return Observable.create(new Observable.OnSubscribe<Set<Schema<?>>>() {
+            @Override
+            public void call(final Subscriber<? super Set<Schema<?>>> subscriber) {
+                subject.unsafeSubscribe(new Subscriber<Set<Schema<?>>>(subscriber) {
+                    @Override
+                    public void onCompleted() {
+                        subscriber.onCompleted();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        subscriber.onError(e);
+                    }
+
+                    @Override
+                    public void onNext(Set<Schema<?>> tables) {
+                        try {
+                            subscriber.onNext(tables);
+                        } catch (Throwable e) {
+                            // e.g. OnErrorNotImplementedException; it must not be thrown into the writer
+                            RxJavaHooks.onError(e);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param schema A schema
+     * @return An {@link Observable} that yields the modifications of the tables read by a query for {@code schema},
+     * including those joined by direct associations
+     */
+    @NonNull
+    public Observable<Set<Schema<?>>> changesOf(@NonNull Schema<?> schema) {
+        final Set<String> tableNames = tableNamesOf(schema);
+        return asObservable()
+                .filter(new Func1<Set<Schema<?>>, Boolean>() {
+                    @Override
+                    public Boolean call(Set<Schema<?>> schemas) {
+                        for (Schema<?> modified : schemas) {
+                            if (tableNames.contains(modified.getTableName())) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                });
+    }
+
+    /**
+     * Notifies when a query for {@code schema} should be re-executed. It emits once on subscription, and then after
+     * the tables read by the query, including those joined by direct associations, are modified. Modifications within
+     * {@link #DEBOUNCE_MILLIS} are coalesced, and the emissions after the first one come in a background thread.
+     *
+     * @param schema The schema to query
+     * @return An {@link Observable} to trigger a query
+     */
+    @NonNull
+    public Observable<Object> invalidationsOf(@NonNull Schema<?> schema) {
+        Observable<Object> invalidations = changesOf(schema)
+                .debounce(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS, Schedulers.io())
+                .cast(Object.class);
+        // subscribes to modifications before the initial query so as not to miss those made during it
+        return Observable.merge(invalidations, Observable.just((Object) schema));
+    }
+
+    /**
+     * @param schema A schema
+     * @return The names of the table of {@code schema} and the tables joined by its direct associations
+     */
+    @NonNull
+    public static Set<String> tableNamesOf(@NonNull Schema<?> schema) {
+        Set<String> tableNames = new HashSet<>();
+        collectTableNames(schema, tableNames);
+        return tableNames;
+    }
+
+    static void collectTableNames(Schema<?> schema, Set<String> tableNames) {
+        if (!tableNames.add(schema.getTableName())) {
+            return;
+        }
+        for (ColumnDef<?, ?> column : schema.getColumns()) {
+            if (column instanceof AssociationDef) {
+                collectTableNames(((AssociationDef<?, ?, ?>) column).associationSchema, tableNames);
+            }
+        }
+    }
+}
@@ -16,15 +16,19 @@
 package com.github.gfx.android.orma.internal;
 
 import com.github.gfx.android.orma.ColumnDef;
+import com.github.gfx.android.orma.Inserter;
 import com.github.gfx.android.orma.OrmaConnection;
 import com.github.gfx.android.orma.Schema;
 import com.github.gfx.android.orma.Selector;
 
+import android.database.DatabaseUtils;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import rx.functions.Func1;
@@ -38,8 +42,25 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
     @Nullable
     protected StringBuilder whereClause;
 
+    // typed values: Long, Double, String, byte[] or null
     @Nullable
-    protected ArrayList<String> bindArgs;
+    protected ArrayList<Object> bindArgs;
+
+    /**
+     * {@code IN (...)} with more values than a statement can bind, in the order of their positions in
+     * {@link #whereClause}. See {@link #getWhereChunks(int, boolean)}.
+     */
+    @Nullable
+    protected List<LargeIn> largeIns;
+
+    /**
+     * {@code true} if conditions are joined by {@link #or()}, where a row may match more than one chunk.
+     */
+    protected boolean hasOrConjunction = false;
+
+    // the where clause with the values of largeIns embedded, built lazily
+    @Nullable
+    String embeddedWhereClause;
 
     public OrmaConditionBase(@NonNull OrmaConnection conn) {
         this.conn = conn;
@@ -62,13 +83,30 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
         }
 
         for (Object arg : args) {
-            if (arg == null) {
-                bindArgs.add(null);
-            } else if (arg instanceof Boolean) {
-                bindArgs.add((Boolean) arg ? "1" : "0");
-            } else {
-                bindArgs.add(arg.toString());
-            }
+            bindArgs.add(normalizeBindArg(arg));
+        }
+    }
+
+    /**
+     * Converts a value into one of the types that SQLite stores, so that it is bound without stringification.
+     *
+     * @param arg A value bound to a statement
+     * @return A {@link Long}, {@link Double}, {@link String}, {@code byte[]} or {@code null}
+     */
+    @Nullable
+    public static Object normalizeBindArg(@Nullable Object arg) {
+        if (arg == null || arg instanceof Long || arg instanceof Double || arg instanceof String
+                || arg instanceof byte[]) {
+            return arg;
+        } else if (arg instanceof Boolean) {
+            return (Boolean) arg ? 1L : 0L;
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            return ((Number) arg).longValue();
+        } else if (arg instanceof Float) {
+            return ((Number) arg).doubleValue();
+        } else {
+            // e.g. BigDecimal, which loses its precision as a number
+            return arg.toString();
         }
     }
 
@@ -82,10 +120,14 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
      */
     @SuppressWarnings("unchecked")
     public C where(@NonNull CharSequence conditions, @NonNull Object... args) {
+        embeddedWhereClause = null;
         if (whereClause == null) {
             whereClause = new StringBuilder(conditions.length() + 2);
         } else {
             whereClause.append(whereConjunction);
+            if (whereConjunction.equals(" OR ")) {
+                hasOrConjunction = true;
+            }
         }
 
         whereClause.append('(');
@@ -123,16 +165,38 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
             clause.append(" NOT");
         }
         clause.append(" IN (");
-        for (int i = 0, size = values.size(); i < size; i++) {
-            clause.append('?');
 
-            if ((i + 1) != size) {
-                clause.append(", ");
+        if (values.size() <= Inserter.MAX_VARIABLE_NUMBER) {
+            for (int i = 0, size = values.size(); i < size; i++) {
+                clause.append('?');
+
+                if ((i + 1) != size) {
+                    clause.append(", ");
+                }
             }
+            clause.append(')');
+
+            return where(clause, values);
+        }
+
+        // Too many values to bind in a statement; see getWhereChunks()
+        List<Object> args = new ArrayList<>(values.size());
+        for (Object value : values) {
+            args.add(normalizeBindArg(value));
         }
         clause.append(')');
+        where(clause);
+        // the values are inserted just before the closing parens of "IN ()" and of where()
+        addLargeIn(new LargeIn(whereClause.length() - 2, bindArgs.size(), not,
+                new ArrayList<>(new LinkedHashSet<>(args))));
+        return (C) this;
+    }
 
-        return where(clause, values);
+    void addLargeIn(LargeIn largeIn) {
+        if (largeIns == null) {
+            largeIns = new ArrayList<>();
+        }
+        largeIns.add(largeIn);
     }
 
     @SuppressWarnings("unchecked")
@@ -170,23 +234,200 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
     @SuppressWarnings("unchecked")
     public C where(@NonNull OrmaConditionBase<Model, ?> condition) {
         if (condition.whereClause != null && condition.bindArgs != null) {
+            // where() wraps the condition in parens after the conjunction
+            int clauseOffset = whereClause != null ? whereClause.length() + whereConjunction.length() + 1 : 1;
+            int bindArgsOffset = bindArgs != null ? bindArgs.size() : 0;
             this.where(condition.whereClause, condition.bindArgs);
+            if (condition.largeIns != null) {
+                for (LargeIn largeIn : condition.largeIns) {
+                    addLargeIn(largeIn.shift(clauseOffset, bindArgsOffset));
+                }
+            }
+            hasOrConjunction |= condition.hasOrConjunction;
         }
         return (C) this;
     }
 
+    /**
+     * @return The where clause, where the values of {@code IN (...)} with more values than a statement can bind
+     * are embedded as literals
+     */
     @Nullable
     protected String getWhereClause() {
-        return whereClause != null ? whereClause.toString() : null;
+        if (whereClause == null) {
+            return null;
+        }
+        if (largeIns == null) {
+            return whereClause.toString();
+        }
+        if (embeddedWhereClause == null) {
+            embeddedWhereClause = buildEmbeddedWhereClause();
+        }
+        return embeddedWhereClause;
     }
 
     @Nullable
-    protected String[] getBindArgs() {
+    protected Object[] getBindArgs() {
         if (bindArgs != null) {
-            String[] array = new String[bindArgs.size()];
-            return bindArgs.toArray(array);
+            return bindArgs.toArray();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @return The bind args converted into strings, for APIs that take only {@code String[]}
+     */
+    @Nullable
+    protected String[] getBindArgsAsStrings() {
+        return toStrings(getBindArgs());
+    }
+
+    @Nullable
+    protected static String[] toStrings(@Nullable Object[] args) {
+        if (args != null) {
+            String[] array = new String[args.length];
+            for (int i = 0; i < array.length; i++) {
+                Object arg = args[i];
+                array[i] = arg != null ? arg.toString() : null;
+            }
+            return array;
         } else {
             return null;
         }
     }
+
+    String buildEmbeddedWhereClause() {
+        StringBuilder clause = new StringBuilder(whereClause.length() + largeIns.size() * 16);
+        int start = 0;
+        for (LargeIn largeIn : largeIns) {
+            clause.append(whereClause, start, largeIn.clauseOffset);
+            for (int i = 0; i < largeIn.values.size(); i++) {
+                if (i != 0) {
+                    clause.append(", ");
+                }
+                appendLiteral(clause, largeIn.values.get(i));
+            }
+            start = largeIn.clauseOffset;
+        }
+        clause.append(whereClause, start, whereClause.length());
+        return clause.toString();
+    }
+
+    static void appendLiteral(StringBuilder sb, @Nullable Object value) {
+        if (value == null) {
+            sb.append("NULL");
+        } else if (value instanceof Long) {
+            sb.append(value);
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            if (Double.isNaN(d)) {
+                // SQLite stores NaN as NULL
+                sb.append("NULL");
+            } else if (Double.isInfinite(d)) {
+                sb.append(d > 0 ? "9e999" : "-9e999");
+            } else {
+                sb.append(d);
+            }
+        } else if (value instanceof byte[]) {
+            sb.append("X'");
+            for (byte b : (byte[]) value) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            sb.append('\'');
+        } else {
+            DatabaseUtils.appendEscapedSQLString(sb, value.toString());
+        }
+    }
+
+    /**
+     * Splits the condition into statements for {@code IN (...)} with more values than a statement can bind.
+     * If {@code mergeable} is {@code true} and the condition has such an {@code IN} that is neither {@code NOT IN}
+     * nor joined by {@link #or()}, each statement binds a chunk of its values, as many as
+     * {@link Inserter#MAX_VARIABLE_NUMBER} allows, and has the same SQL as the others; the caller runs all of them
+     * and merges the results. Otherwise, it is one statement where the values are embedded as literals by
+     * {@link #getWhereClause()}, which is limited by the max length of SQL (1,000,000 bytes by default).
+     *
+     * @param reservedArgs The number of args bound in the statement besides the condition, e.g. values of {@code SET}
+     * @param mergeable    {@code true} if the caller can merge the results of the statements, i.e. they are neither
+     *                     ordered, limited nor grouped across the statements
+     * @return The where clauses with their bind args, one for each statement
+     */
+    @NonNull
+    protected List<WhereChunk> getWhereChunks(int reservedArgs, boolean mergeable) {
+        int chunkSize = bindArgs != null ? Inserter.MAX_VARIABLE_NUMBER - reservedArgs - bindArgs.size() : 0;
+        if (largeIns == null || !mergeable || largeIns.size() != 1 || largeIns.get(0).not || hasOrConjunction
+                || chunkSize <= 0) {
+            return Collections.singletonList(new WhereChunk(getWhereClause(), getBindArgs(), largeIns != null));
+        }
+
+        LargeIn largeIn = largeIns.get(0);
+        String head = whereClause.substring(0, largeIn.clauseOffset);
+        String tail = whereClause.substring(largeIn.clauseOffset);
+        List<Object> headArgs = bindArgs.subList(0, largeIn.bindArgsOffset);
+        List<Object> tailArgs = bindArgs.subList(largeIn.bindArgsOffset, bindArgs.size());
+
+        List<WhereChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < largeIn.values.size(); i += chunkSize) {
+            List<Object> values = largeIn.values.subList(i, Math.min(i + chunkSize, largeIn.values.size()));
+            StringBuilder clause = new StringBuilder(head);
+            for (int j = 0; j < values.size(); j++) {
+                clause.append(j == 0 ? "?" : ", ?");
+            }
+            clause.append(tail);
+
+            List<Object> args = new ArrayList<>(headArgs.size() + values.size() + tailArgs.size());
+            args.addAll(headArgs);
+            args.addAll(values);
+            args.addAll(tailArgs);
+            chunks.add(new WhereChunk(clause.toString(), args.toArray(), false));
+        }
+        return chunks;
+    }
+
+    /**
+     * The position of {@code IN (...)} in {@link #whereClause} and {@link #bindArgs}, and its values.
+     */
+    protected static class LargeIn {
+
+        final int clauseOffset;
+
+        final int bindArgsOffset;
+
+        final boolean not;
+
+        final List<Object> values;
+
+        LargeIn(int clauseOffset, int bindArgsOffset, boolean not, List<Object> values) {
+            this.clauseOffset = clauseOffset;
+            this.bindArgsOffset = bindArgsOffset;
+            this.not = not;
+            this.values = values;
+        }
+
+        LargeIn shift(int clauseOffset, int bindArgsOffset) {
+            return new LargeIn(this.clauseOffset + clauseOffset, this.bindArgsOffset + bindArgsOffset, not, values);
+        }
+    }
+
+    protected static class WhereChunk {
+
+        @Nullable
+        public final String whereClause;
+
+        @Nullable
+        public final Object[] bindArgs;
+
+        /**
+         * {@code true} if values are embedded in {@link #whereClause}, which is not worth caching
+         */
+        public final boolean hasLiterals;
+
+        WhereChunk(@Nullable String whereClause, @Nullable Object[] bindArgs, boolean hasLiterals) {
+            this.whereClause = whereClause;
+            this.bindArgs = bindArgs;
+            this.hasLiterals = hasLiterals;
+        }
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.internal;
+
+import com.github.gfx.android.orma.Selector;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator that walks a single forward-only cursor. It is closed when it reaches the end,
+ * or when {@link #close()} is called.
+ */
+public class OrmaCursorIterator<Model> implements Iterator<Model>, Closeable {
+
+    final Selector<Model, ?> selector;
+
+    Cursor cursor;
+
+    boolean prefetched = false;
+
+    public OrmaCursorIterator(Selector<Model, ?> selector) {
+        this.selector = selector;
+        this.cursor = selector.execute();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cursor == null) {
+            return false;
+        }
+        if (!prefetched) {
+            if (!cursor.moveToNext()) {
+                close();
+                return false;
+            }
+            prefetched = true;
+        }
+        return true;
+    }
+
+    @Override
+    public Model next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("OrmaCursorIterator#next()");
+        }
+        prefetched = false;
+        return selector.newModelFromCursor(cursor);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Iterator#remove()");
+    }
+
+    @Override
+    public void close() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+}
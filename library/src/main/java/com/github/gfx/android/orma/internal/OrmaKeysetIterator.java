@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.internal;
+
+import com.github.gfx.android.orma.ColumnDef;
+import com.github.gfx.android.orma.OrderSpec;
+import com.github.gfx.android.orma.Schema;
+import com.github.gfx.android.orma.Selector;
+import com.github.gfx.android.orma.exception.InvalidStatementException;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator with keyset pagination. See {@link Selector#keysetIterator()} for details.
+ */
+public class OrmaKeysetIterator<Model> implements Iterator<Model> {
+
+    static final int batchSize = OrmaIterator.batchSize;
+
+    final Selector<Model, ?> selector;
+
+    final List<OrderSpec<Model>> keys;
+
+    final String[] columns;
+
+    final int keyColumnsOffset;
+
+    final String orderingTerms;
+
+    Cursor cursor;
+
+    // the values of the keys in the last row of the last batch
+    Object[] lastKeyValues;
+
+    public OrmaKeysetIterator(Selector<Model, ?> selector, List<OrderSpec<Model>> orderSpecs) {
+        this.selector = selector;
+        this.keys = buildKeys(selector.getSchema(), orderSpecs);
+
+        String[] resultColumns = selector.getSchema().getDefaultResultColumns();
+        keyColumnsOffset = resultColumns.length;
+        columns = new String[resultColumns.length + keys.size()];
+        System.arraycopy(resultColumns, 0, columns, 0, resultColumns.length);
+        for (int i = 0; i < keys.size(); i++) {
+            columns[keyColumnsOffset + i] = keys.get(i).column.getQualifiedName();
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (OrderSpec<Model> key : keys) {
+            if (sb.length() != 0) {
+                sb.append(", ");
+            }
+            sb.append(key);
+        }
+        orderingTerms = sb.toString();
+
+        fill();
+    }
+
+    static <Model> List<OrderSpec<Model>> buildKeys(Schema<Model> schema, List<OrderSpec<Model>> orderSpecs) {
+        List<OrderSpec<Model>> keys = new ArrayList<>(orderSpecs);
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        for (OrderSpec<Model> orderSpec : orderSpecs) {
+            if (orderSpec.column == primaryKey) {
+                return keys;
+            }
+        }
+        keys.add(primaryKey.orderInAscending());
+        return keys;
+    }
+
+    void finish() {
+        cursor.close();
+        cursor = null;
+    }
+
+    void fill() {
+        if (cursor != null) {
+            cursor.moveToLast();
+            lastKeyValues = readKeyValues(cursor);
+            cursor.close();
+        }
+
+        String whereClause = selector.getWhereClause();
+        List<Object> bindArgs = new ArrayList<>();
+        Object[] baseBindArgs = selector.getBindArgs();
+        if (baseBindArgs != null) {
+            Collections.addAll(bindArgs, baseBindArgs);
+        }
+
+        if (lastKeyValues != null) {
+            String seekClause = buildSeekClause(bindArgs);
+            whereClause = whereClause != null ? "(" + whereClause + ") AND (" + seekClause + ")" : seekClause;
+        }
+
+        String sql = SQLiteQueryBuilder.buildQueryString(false, selector.getSchema().getSelectFromTableClause(),
+                columns, whereClause, null, null, orderingTerms, String.valueOf(batchSize));
+        cursor = selector.getConnection().rawQuery(sql, bindArgs.toArray());
+    }
+
+    /**
+     * Row values, e.g. {@code (a, b) > (?, ?)}, are not available in SQLite bundled with old Android,
+     * so it is expanded to {@code (a > ?) OR (a = ? AND b > ?)}, respecting the direction of each key.
+     */
+    String buildSeekClause(List<Object> bindArgs) {
+        StringBuilder clause = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            if (i != 0) {
+                clause.append(" OR ");
+            }
+            clause.append('(');
+            for (int j = 0; j < i; j++) {
+                clause.append(keys.get(j).column.getQualifiedName());
+                clause.append(" = ? AND ");
+                bindArgs.add(lastKeyValues[j]);
+            }
+            OrderSpec<Model> key = keys.get(i);
+            clause.append(key.column.getQualifiedName());
+            clause.append(key.ordering.equals(OrderSpec.DESC) ? " < ?" : " > ?");
+            bindArgs.add(lastKeyValues[i]);
+            clause.append(')');
+        }
+        return clause.toString();
+    }
+
+    Object[] readKeyValues(Cursor cursor) {
+        Object[] values = new Object[keys.size()];
+        for (int i = 0; i < values.length; i++) {
+            int index = keyColumnsOffset + i;
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values[i] = cursor.getLong(index);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values[i] = cursor.getDouble(index);
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    values[i] = cursor.getString(index);
+                    break;
+                default:
+                    throw new InvalidStatementException("keysetIterator() can't seek by " + keys.get(i).column
+                            + " because it is NULL or BLOB");
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cursor == null) {
+            return false;
+        }
+        if (cursor.getPosition() + 1 < cursor.getCount()) {
+            return true;
+        }
+        if (cursor.getCount() < batchSize) {
+            finish();
+            return false;
+        }
+        fill();
+        return hasNext();
+    }
+
+    @Override
+    public Model next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("OrmaKeysetIterator#next()");
+        }
+
+        cursor.moveToNext();
+        return selector.newModelFromCursor(cursor);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Iterator#remove()");
+    }
+}
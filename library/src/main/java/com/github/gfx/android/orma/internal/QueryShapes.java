@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.internal;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Shapes of SQL, where literals are replaced with placeholders and value lists are collapsed, so that statements that
+ * differ only in values, e.g. {@code IN} lists of different lengths, have the same shape.
+ *
+ * An instance caches the shapes of the statements of a connection without locking. It stops adding shapes once it
+ * has {@code maxSize} of them, because SQL written with values by hand may be unique.
+ */
+public class QueryShapes {
+
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    static final Pattern STRING_LITERAL = Pattern.compile("[xX]?'(?:[^']|'')*'");
+
+    static final Pattern NUMERIC_LITERAL = Pattern.compile("(?<![\\w`])-?\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?(?![\\w`])");
+
+    static final Pattern VALUE_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    final int maxSize;
+
+    final ConcurrentHashMap<String, String> shapes = new ConcurrentHashMap<>();
+
+    public QueryShapes(@IntRange(from = 0) int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @NonNull
+    public String of(@NonNull String sql) {
+        String shape = shapes.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (shapes.size() < maxSize) {
+                shapes.putIfAbsent(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * @param sql A SQL statement
+     * @return The shape of {@code sql}, which is not cached
+     */
+    @NonNull
+    public static String normalize(@NonNull String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMERIC_LITERAL.matcher(s).replaceAll("?");
+        return VALUE_LIST.matcher(s).replaceAll("?");
+    }
+}
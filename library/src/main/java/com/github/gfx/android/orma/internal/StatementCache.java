@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.internal;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of {@link SQLiteStatement} keyed by SQL.
+ *
+ * A statement is checked out by {@link #acquire(SQLiteDatabase, String)} and must be returned by
+ * {@link #release(String, SQLiteStatement)}. While checked out, a statement is owned by the caller
+ * exclusively, and another caller that requests the same SQL gets a newly compiled one;
+ * no lock is held during executing statements.
+ */
+public class StatementCache {
+
+    final int maxSize;
+
+    final LinkedHashMap<String, SQLiteStatement> statements;
+
+    long hitCount = 0;
+
+    long missCount = 0;
+
+    public StatementCache(@IntRange(from = 0) final int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > maxSize) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @NonNull
+    public SQLiteStatement acquire(@NonNull SQLiteDatabase db, @NonNull String sql) {
+        synchronized (this) {
+            SQLiteStatement statement = statements.remove(sql);
+            if (statement != null) {
+                hitCount++;
+                return statement;
+            }
+            missCount++;
+        }
+        return db.compileStatement(sql);
+    }
+
+    public void release(@NonNull String sql, @NonNull SQLiteStatement statement) {
+        statement.clearBindings();
+        synchronized (this) {
+            if (maxSize != 0 && !statements.containsKey(sql)) {
+                statements.put(sql, statement);
+                return;
+            }
+        }
+        statement.close();
+    }
+
+    public synchronized void clear() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache{" +
+                "size=" + statements.size() +
+                ", maxSize=" + maxSize +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                '}';
+    }
+}
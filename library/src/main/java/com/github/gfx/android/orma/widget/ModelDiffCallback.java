@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.widget;
+
+import com.github.gfx.android.orma.ColumnDef;
+import com.github.gfx.android.orma.Schema;
+
+import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link DiffUtil.Callback} for models, which identifies items by the primary key
+ * and compares contents by the serialized values of all the columns.
+ *
+ * @param <Model> An Orma model class
+ */
+public class ModelDiffCallback<Model> extends DiffUtil.Callback {
+
+    final Schema<Model> schema;
+
+    final List<Model> oldItems;
+
+    final List<Model> newItems;
+
+    public ModelDiffCallback(@NonNull Schema<Model> schema, @NonNull List<Model> oldItems, @NonNull List<Model> newItems) {
+        this.schema = schema;
+        this.oldItems = oldItems;
+        this.newItems = newItems;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        return valueEquals(primaryKey.getSerialized(oldItems.get(oldItemPosition)),
+                primaryKey.getSerialized(newItems.get(newItemPosition)));
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        Model oldItem = oldItems.get(oldItemPosition);
+        Model newItem = newItems.get(newItemPosition);
+        for (ColumnDef<Model, ?> column : schema.getColumns()) {
+            if (!valueEquals(column.getSerialized(oldItem), column.getSerialized(newItem))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean valueEquals(Object a, Object b) {
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -44,11 +44,17 @@ public class OrmaAdapter<Model> {
 
     final Handler handler = new Handler(Looper.getMainLooper());
 
-    int count = -1;
+    final PageCache<Model> pageCache;
 
     public OrmaAdapter(@NonNull Context context, @NonNull Relation<Model, ?> relation) {
+        this(context, relation, new PageCache<>(relation));
+    }
+
+    public OrmaAdapter(@NonNull Context context, @NonNull Relation<Model, ?> relation,
+            @NonNull PageCache<Model> pageCache) {
         this.context = context;
         this.relation = relation;
+        this.pageCache = pageCache;
     }
 
     @NonNull
@@ -61,11 +67,8 @@ public class OrmaAdapter<Model> {
         return LayoutInflater.from(context);
     }
 
-    public synchronized int getItemCount() {
-        if (count == -1) {
-            count = relation.count();
-        }
-        return count;
+    public int getItemCount() {
+        return pageCache.getCount();
     }
 
     @NonNull
@@ -83,7 +86,15 @@ public class OrmaAdapter<Model> {
             throw new NoValueException(
                     "ouf of range: getItem(" + position + ") for the relation with " + getItemCount() + " items");
         }
-        return relation.get(position);
+        return pageCache.get(position);
+    }
+
+    /**
+     * Discards the cached count and items. Modifications made by the connection of the relation are tracked by
+     * {@link PageCache}, so call it only when the relation is modified in other ways.
+     */
+    public void invalidate() {
+        pageCache.invalidate();
     }
 
     @NonNull
@@ -98,7 +109,7 @@ public class OrmaAdapter<Model> {
                 .doOnSuccess(new Action1<Long>() {
                     @Override
                     public void call(Long rowId) {
-                        count = -1;
+                        invalidate();
                     }
                 });
     }
@@ -110,7 +121,7 @@ public class OrmaAdapter<Model> {
                 .doOnNext(new Action1<Integer>() {
                     @Override
                     public void call(Integer position) {
-                        count = -1;
+                        invalidate();
                     }
                 });
     }
@@ -122,7 +133,7 @@ public class OrmaAdapter<Model> {
                 .doOnSuccess(new Action1<Integer>() {
                     @Override
                     public void call(Integer deletedRows) {
-                        count = -1;
+                        invalidate();
                     }
                 });
     }
@@ -21,13 +21,22 @@ import com.github.gfx.android.orma.Relation;
 
 import android.content.Context;
 import android.support.annotation.CheckResult;
+import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 
+import java.util.List;
+
+import rx.Completable;
+import rx.CompletableSubscriber;
 import rx.Observable;
 import rx.Single;
+import rx.Subscription;
 import rx.functions.Action1;
+import rx.schedulers.Schedulers;
 
 
 /**
@@ -38,8 +47,27 @@ import rx.functions.Action1;
  */
 public abstract class OrmaRecyclerViewAdapter<Model, VH extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<VH> {
 
+    public static final int DEFAULT_MAX_DIFF_ITEMS = 1000;
+
     protected final OrmaAdapter<Model> delegate;
 
+    final Object reloadLock = new Object();
+
+    /**
+     * The items a reload has loaded most recently, which are the base of the next diff. Guarded by {@link #reloadLock}.
+     */
+    List<Model> loadedItems;
+
+    /**
+     * The items shown in the diff mode, accessed only on the UI thread.
+     */
+    @Nullable
+    List<Model> items;
+
+    volatile boolean diffMode = false;
+
+    volatile int maxDiffItems = DEFAULT_MAX_DIFF_ITEMS;
+
     public OrmaRecyclerViewAdapter(@NonNull Context context, @NonNull Relation<Model, ?> relation) {
         this(new OrmaAdapter<>(context, relation));
     }
@@ -50,6 +78,9 @@ public abstract class OrmaRecyclerViewAdapter<Model, VH extends RecyclerView.Vie
 
     @Override
     public int getItemCount() {
+        if (items != null) {
+            return items.size();
+        }
         return delegate.getItemCount();
     }
 
@@ -79,9 +110,136 @@ public abstract class OrmaRecyclerViewAdapter<Model, VH extends RecyclerView.Vie
 
     @NonNull
     public Model getItem(int position) {
+        if (items != null) {
+            return items.get(position);
+        }
         return delegate.getItem(position);
     }
 
+    /**
+     * @return {@code true} if the adapter is in the diff mode, which is entered by {@link #reloadAsObservable()}
+     */
+    public boolean isDiffMode() {
+        return diffMode;
+    }
+
+    /**
+     * Sets the max number of items that {@link #reloadAsObservable()} loads to make a diff. The default is
+     * {@link #DEFAULT_MAX_DIFF_ITEMS}.
+     *
+     * @param maxDiffItems The max number of items to make a diff
+     */
+    public void setMaxDiffItems(@IntRange(from = 0) int maxDiffItems) {
+        this.maxDiffItems = maxDiffItems;
+    }
+
+    /**
+     * Re-runs the relation and dispatches the difference from the items currently shown as item range notifications,
+     * instead of {@link RecyclerView.Adapter#notifyDataSetChanged()}. Items are identified by their primary keys and
+     * compared by the values of their columns; see {@link ModelDiffCallback}.
+     * <p>
+     * It is intended for small relations: every reload loads all the items into memory and compares them with
+     * the previous ones. If the relation has more than {@link #setMaxDiffItems(int)} items, the reload shows them
+     * through the {@link PageCache} of the delegate with {@link RecyclerView.Adapter#notifyDataSetChanged()}
+     * instead, until a later reload finds few enough items.
+     * <p>
+     * Once this is called, the adapter enters the diff mode: it shows the snapshot loaded by the last reload, and
+     * {@link #addItemAsObservable(ModelFactory)}, {@link #removeItemAsObservable(Object)} and
+     * {@link #clearAsObservable()} reload the relation instead of notifying changes by themselves.
+     * <p>
+     * Both the query and the diff are done in the subscribing thread, so subscribe it in a background thread.
+     *
+     * @return A {@link Completable} that completes after the updates are dispatched on the UI thread.
+     */
+    @CheckResult
+    @NonNull
+    public Completable reloadAsObservable() {
+        return Completable.create(new Completable.OnSubscribe() {
+            @Override
+            public void call(final CompletableSubscriber subscriber) {
+                diffMode = true;
+                try {
+                    reload(subscriber);
+                } catch (Throwable e) {
+                    subscriber.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reloads the relation by {@link #reloadAsObservable()} in a background thread each time {@code changes} emits.
+     * Changes that come during a reload are coalesced into the next one.
+     * {@link com.github.gfx.android.orma.OrmaConnection#changesAsObservable()} is a source of {@code changes}.
+     *
+     * @param changes An {@link Observable} that notifies modifications of the relation
+     * @return A {@link Subscription} to stop reloading
+     */
+    @NonNull
+    public Subscription reloadOn(@NonNull Observable<?> changes) {
+        return changes
+                .onBackpressureLatest()
+                .observeOn(Schedulers.io(), 1)
+                .subscribe(new Action1<Object>() {
+                    @Override
+                    public void call(Object o) {
+                        reloadAsObservable().await();
+                    }
+                });
+    }
+
+    void reload(final CompletableSubscriber subscriber) {
+        // the lock serializes reloads so that each diff is based on the result of the previous reload,
+        // and the diffs are dispatched in order because the UI thread runs posted tasks in order.
+        synchronized (reloadLock) {
+            // one more item than the max tells whether the relation is too large to make a diff
+            final int maxDiffItems = this.maxDiffItems;
+            final List<Model> newItems = delegate.getRelation().selector().limit(maxDiffItems + 1L).toList();
+            if (newItems.size() > maxDiffItems) {
+                loadedItems = null;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        items = null;
+                        delegate.invalidate();
+                        notifyDataSetChanged();
+                        subscriber.onCompleted();
+                    }
+                });
+                return;
+            }
+
+            final DiffUtil.DiffResult diffResult;
+            if (loadedItems != null) {
+                diffResult = DiffUtil.calculateDiff(
+                        new ModelDiffCallback<>(delegate.relation.getSchema(), loadedItems, newItems));
+            } else {
+                diffResult = null;
+            }
+            loadedItems = newItems;
+
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    items = newItems;
+                    if (diffResult != null) {
+                        diffResult.dispatchUpdatesTo(OrmaRecyclerViewAdapter.this);
+                    } else {
+                        notifyDataSetChanged();
+                    }
+                    subscriber.onCompleted();
+                }
+            });
+        }
+    }
+
+    void reloadInDiffMode() {
+        // the query and the diff must not run on the thread that emits the result, which may be the UI thread
+        reloadAsObservable()
+                .subscribeOn(Schedulers.io())
+                .subscribe();
+    }
+
     /**
      * Inserts a model into the table and invokes {@link RecyclerView.Adapter#notifyItemInserted(int)}
      *
@@ -95,6 +253,10 @@ public abstract class OrmaRecyclerViewAdapter<Model, VH extends RecyclerView.Vie
                 .doOnSuccess(new Action1<Long>() {
                     @Override
                     public void call(Long rowId) {
+                        if (diffMode) {
+                            reloadInDiffMode();
+                            return;
+                        }
                         runOnUiThread(new Runnable() {
                             @Override
                             public void run() {
@@ -137,6 +299,10 @@ public abstract class OrmaRecyclerViewAdapter<Model, VH extends RecyclerView.Vie
                 .doOnNext(new Action1<Integer>() {
                     @Override
                     public void call(final Integer position) {
+                        if (diffMode) {
+                            reloadInDiffMode();
+                            return;
+                        }
                         runOnUiThread(new Runnable() {
                             @Override
                             public void run() {
@@ -148,7 +314,8 @@ public abstract class OrmaRecyclerViewAdapter<Model, VH extends RecyclerView.Vie
     }
 
     /**
-     * Deletes all the rows in the table and invokes {@link RecyclerView.Adapter#notifyDataSetChanged()}.
+     * Deletes all the rows in the table and invokes {@link RecyclerView.Adapter#notifyDataSetChanged()},
+     * or reloads the relation in the diff mode.
      *
      * @return A {@link Single} that yields the number of deleted items.
      */
@@ -159,6 +326,10 @@ public abstract class OrmaRecyclerViewAdapter<Model, VH extends RecyclerView.Vie
                 .doOnSuccess(new Action1<Integer>() {
                     @Override
                     public void call(Integer deletedItems) {
+                        if (diffMode) {
+                            reloadInDiffMode();
+                            return;
+                        }
                         runOnUiThread(new Runnable() {
                             @Override
                             public void run() {
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.widget;
+
+import com.github.gfx.android.orma.Relation;
+import com.github.gfx.android.orma.Schema;
+import com.github.gfx.android.orma.exception.NoValueException;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * A sliding-window cache of a relation, which loads items page by page and keeps recently used pages in LRU.
+ * Pages next to the accessed one are prefetched in background, so that scrolling an adapter rarely hits the database
+ * on the UI thread.
+ *
+ * The cache is invalidated when the connection of the relation modifies the tables that the relation reads.
+ * Call {@link #invalidate()} when they are modified in other ways, e.g. by another process.
+ *
+ * @param <Model> An Orma model class
+ */
+public class PageCache<Model> {
+
+    static final String TAG = "OrmaPageCache";
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    public static final int DEFAULT_MAX_PAGES = 8;
+
+    final Relation<Model, ?> relation;
+
+    final int pageSize;
+
+    final Scheduler scheduler;
+
+    final LinkedHashMap<Integer, List<Model>> pages;
+
+    final Map<Integer, PendingPage<Model>> loadingPages = new HashMap<>();
+
+    int generation = 0;
+
+    int count = -1;
+
+    public PageCache(@NonNull Relation<Model, ?> relation) {
+        this(relation, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES, Schedulers.io());
+    }
+
+    public PageCache(@NonNull Relation<Model, ?> relation, @IntRange(from = 1) int pageSize,
+            @IntRange(from = 1) final int maxPages, @NonNull Scheduler scheduler) {
+        this.relation = relation;
+        this.pageSize = pageSize;
+        this.scheduler = scheduler;
+        this.pages = new LinkedHashMap<Integer, List<Model>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Model>> eldest) {
+                return size() > maxPages;
+            }
+        };
+        subscribeChanges(this);
+    }
+
+    /**
+     * Invalidates {@code cache} when the tables of its relation are modified. The subscriber refers to the cache
+     * weakly, so the connection does not keep an adapter that is no longer used.
+     */
+    static void subscribeChanges(PageCache<?> cache) {
+        final WeakReference<PageCache<?>> cacheRef = new WeakReference<PageCache<?>>(cache);
+        Relation<?, ?> relation = cache.relation;
+        relation.getConnection().getInvalidationTracker().changesOf(relation.getSchema())
+                .subscribe(new Subscriber<Set<Schema<?>>>() {
+                    @Override
+                    public void onCompleted() {
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        Log.w(TAG, "Failed to observe changes", e);
+                    }
+
+                    @Override
+                    public void onNext(Set<Schema<?>> schemas) {
+                        PageCache<?> cache = cacheRef.get();
+                        if (cache != null) {
+                            cache.invalidate();
+                        } else {
+                            unsubscribe();
+                        }
+                    }
+                });
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the item at {@code position}. It loads the page synchronously if it is not cached,
+     * or waits for the prefetch of the page if it is in progress, and prefetches the neighbor page in background.
+     *
+     * @param position The position of the item in the relation
+     * @return The item
+     */
+    @NonNull
+    public Model get(@IntRange(from = 0) int position) {
+        int page = position / pageSize;
+        int index = position % pageSize;
+
+        List<Model> items;
+        PendingPage<Model> pendingPage;
+        int currentGeneration;
+        synchronized (this) {
+            items = pages.get(page);
+            pendingPage = loadingPages.get(page);
+            currentGeneration = generation;
+        }
+        if (items == null && pendingPage != null) {
+            items = pendingPage.await();
+        }
+        if (items == null) {
+            items = loadPage(page);
+            synchronized (this) {
+                if (currentGeneration == generation) {
+                    pages.put(page, items);
+                }
+            }
+        }
+
+        if (index < pageSize / 2) {
+            prefetch(page - 1);
+        } else {
+            prefetch(page + 1);
+        }
+
+        if (index >= items.size()) {
+            throw new NoValueException("out of range: get(" + position + ")");
+        }
+        return items.get(index);
+    }
+
+    /**
+     * @return The number of items in the relation, which is cached until invalidated
+     */
+    public int getCount() {
+        int currentGeneration;
+        synchronized (this) {
+            if (count != -1) {
+                return count;
+            }
+            currentGeneration = generation;
+        }
+        int n = relation.count();
+        synchronized (this) {
+            if (currentGeneration == generation) {
+                count = n;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Discards the cached count and pages, and results of loading in progress.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        count = -1;
+        pages.clear();
+        loadingPages.clear();
+    }
+
+    @NonNull
+    List<Model> loadPage(int page) {
+        return relation.selector()
+                .offset((long) page * pageSize)
+                .limit(pageSize)
+                .toList();
+    }
+
+    void prefetch(final int page) {
+        if (page < 0) {
+            return;
+        }
+        final PendingPage<Model> pendingPage = new PendingPage<>();
+        final int currentGeneration;
+        synchronized (this) {
+            if (pages.containsKey(page) || loadingPages.containsKey(page)) {
+                return;
+            }
+            loadingPages.put(page, pendingPage);
+            currentGeneration = generation;
+        }
+
+        // a worker per task, so that nothing is left to unsubscribe when the cache is no longer used
+        final Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                List<Model> items = null;
+                try {
+                    items = loadPage(page);
+                } catch (RuntimeException e) {
+                    // it will be loaded again by get() if it is really needed
+                    Log.w(TAG, "Failed to prefetch page " + page, e);
+                } finally {
+                    synchronized (PageCache.this) {
+                        if (currentGeneration == generation) {
+                            loadingPages.remove(page);
+                            if (items != null && !items.isEmpty()) {
+                                pages.put(page, items);
+                            }
+                        }
+                    }
+                    pendingPage.done(items);
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+
+    static class PendingPage<Model> {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        List<Model> items;
+
+        void done(List<Model> items) {
+            this.items = items;
+            latch.countDown();
+        }
+
+        /**
+         * @return The loaded items, or {@code null} if loading failed
+         */
+        List<Model> await() {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return items;
+        }
+    }
+}
@@ -27,9 +27,12 @@ import org.junit.runner.RunWith;
 
 import android.support.test.runner.AndroidJUnit4;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -121,6 +124,64 @@ public class ConditionHelpersTest {
         assertThat(selector().dateValueIn(new Date(1), new Date(2)).count(), is(2));
     }
 
+    @Test
+    public void testInWithLargeCollections() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<Double> doubles = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ids.add((long) i);
+            texts.add("non-null text " + i);
+            doubles.add(i + 0.5);
+        }
+        texts.add("it's quoted");
+        doubles.add(1.0);
+
+        assertThat(selector().idIn(ids).count(), is(10));
+        assertThat(selector().idIn(ids).toList(), hasSize(10));
+        assertThat(selector().nonNullTextIn(texts).count(), is(10));
+        assertThat(selector().doubleValueIn(doubles).count(), is(1));
+        assertThat(selector().idIn(ids).nonNullTextEq("non-null text 1").toList(), hasSize(1));
+        assertThat(selector().nonNullTextEq("non-null text 1").idIn(ids).value().nonNullText, is("non-null text 1"));
+        assertThat(db.relationOfModelWithConditionHelpers().idIn(ids).selector().count(), is(10));
+
+        assertThat(db.updateModelWithConditionHelpers().idIn(ids).nonNullText("updated").execute(), is(10));
+        assertThat(db.deleteFromModelWithConditionHelpers().nonNullTextIn(Collections.singletonList("updated"))
+                .idIn(ids).execute(), is(10));
+    }
+
+    @Test
+    public void testInWithLargeCollectionsEmbedded() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ids.add((long) i);
+            texts.add("non-null text " + i);
+        }
+
+        assertThat(selector().idNotIn(ids).count(), is(0));
+        assertThat(selector().idIn(ids).nonNullTextIn(texts).count(), is(10));
+        assertThat(selector().idIn(ids).or().nonNullTextEq("non-null text 1").count(), is(10));
+
+        List<ModelWithConditionHelpers> models = selector().idIn(ids).orderByIdDesc().toList();
+        assertThat(models, hasSize(10));
+        assertThat(models.get(0).id, is(10L));
+        assertThat(selector().idIn(ids).orderByIdAsc().limit(3).offset(2).toList().get(0).id, is(3L));
+        assertThat(selector().idIn(ids).orderByIdAsc().get(9).id, is(10L));
+
+        int n = 0;
+        Iterator<ModelWithConditionHelpers> iterator = selector().idIn(ids).orderByIdAsc().iterator();
+        while (iterator.hasNext()) {
+            assertThat(iterator.next().id, is((long) ++n));
+        }
+        assertThat(n, is(10));
+
+        assertThat(db.updateModelWithConditionHelpers().idIn(ids).or().idEq(1).nonNullText("updated").execute(),
+                is(10));
+        assertThat(db.deleteFromModelWithConditionHelpers().idNotIn(ids).execute(), is(0));
+        assertThat(db.deleteFromModelWithConditionHelpers().idIn(ids).or().idEq(1).execute(), is(10));
+    }
+
     @Test
     public void testNotIn() throws Exception {
         assertThat(selector().nonNullTextNotIn(Arrays.asList("non-null text 1", "non-null text 2")).count(), is(8));
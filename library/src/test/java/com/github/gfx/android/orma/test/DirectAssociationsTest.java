@@ -18,9 +18,11 @@ package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.Inserter;
 import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.Projection;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.ModelWithDirectAssociation;
 import com.github.gfx.android.orma.test.model.ModelWithDirectAssociation2;
+import com.github.gfx.android.orma.test.model.ModelWithDirectAssociation_Schema;
 import com.github.gfx.android.orma.test.model.ModelWithDirectAssociation_Selector;
 import com.github.gfx.android.orma.test.model.ModelWithNestedDirectAssociations;
 import com.github.gfx.android.orma.test.model.ModelWithNullableDirectAssociations;
@@ -467,4 +469,25 @@ public class DirectAssociationsTest {
         assertThat(model.author.note, is(author1.note));
     }
 
+
+    @Test
+    public void testSelectProjection() throws Exception {
+        ModelWithDirectAssociation model = new ModelWithDirectAssociation();
+        model.name = "foo";
+        model.author = author1;
+        model.publisher = publisher;
+        model.note = "SQLite rocks";
+        orma.insertIntoModelWithDirectAssociation(model);
+
+        ModelWithDirectAssociation_Selector selector = orma.selectFromModelWithDirectAssociation();
+        ModelWithDirectAssociation_Schema schema = selector.getSchema();
+        Projection.Row<ModelWithDirectAssociation> row = selector.select(schema.publisher, schema.note).toList().get(0);
+
+        assertThat(row.get(schema.note), is("SQLite rocks"));
+        Publisher p = row.get(schema.publisher);
+        assertThat(p, is(notNullValue()));
+        assertThat(p.id, is(publisher.id));
+        assertThat(p.name, is(publisher.name));
+        assertThat(p.startedYear, is(publisher.startedYear));
+    }
 }
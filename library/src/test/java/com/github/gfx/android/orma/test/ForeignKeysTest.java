@@ -21,6 +21,7 @@ import com.github.gfx.android.orma.SingleAssociation;
 import com.github.gfx.android.orma.test.model.Book;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
 import com.github.gfx.android.orma.test.model.Publisher;
+import com.github.gfx.android.orma.test.model.PublisherSchema;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
 
 import org.junit.Before;
@@ -31,6 +32,8 @@ import android.database.sqlite.SQLiteException;
 import android.support.annotation.NonNull;
 import android.support.test.runner.AndroidJUnit4;
 
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
 
@@ -150,6 +153,46 @@ public class ForeignKeysTest {
         assertThat(b.books(db).count(), is(3));
     }
 
+    @Test
+    public void testHasManyIncludes() throws Exception {
+        db.insertIntoPublisher(Publisher.create("no books", 2016, 1));
+
+        List<Publisher> publishers = db.selectFromPublisher()
+                .orderByIdAsc()
+                .includes(PublisherSchema.INSTANCE.bookList)
+                .toList();
+
+        assertThat(publishers, hasSize(2));
+        assertThat(publishers.get(0).bookList, hasSize(2));
+        assertThat(publishers.get(0).bookList.get(0).title, is("today"));
+        assertThat(publishers.get(0).bookList.get(1).title, is("friday"));
+        assertThat(publishers.get(1).bookList, is(empty()));
+    }
+
+    @Test
+    public void testHasManyIncludesWithoutIncludes() throws Exception {
+        assertThat(db.selectFromPublisher().value().bookList, is(nullValue()));
+    }
+
+    @Test
+    public void testUpsertKeepsChildren() throws Exception {
+        publisher.name = "The Nova";
+        long rowId = db.relationOfPublisher().upsert(publisher);
+
+        assertThat(rowId, is(publisher.id));
+        assertThat(db.selectFromPublisher().value().name, is("The Nova"));
+        assertThat("books are not deleted by ON DELETE CASCADE", db.selectFromBook().count(), is(2));
+    }
+
+    @Test
+    public void testUpsertInsertsNewModel() throws Exception {
+        long rowId = db.relationOfPublisher().upsert(Publisher.create("The Nova", 2016, 1));
+
+        assertThat(rowId, is(not(publisher.id)));
+        assertThat(db.selectFromPublisher().count(), is(2));
+        assertThat(db.selectFromPublisher().idEq(rowId).value().name, is("The Nova"));
+    }
+
     @Test
     public void updateSingleAssociation() throws Exception {
         Publisher publisher = db.createPublisher(new ModelFactory<Publisher>() {
@@ -19,6 +19,7 @@ import com.github.gfx.android.orma.ModelFactory;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.ModelWithBlob;
 import com.github.gfx.android.orma.test.model.ModelWithBoxTypes;
+import com.github.gfx.android.orma.test.model.ModelWithChangeTracker;
 import com.github.gfx.android.orma.test.model.ModelWithCollation;
 import com.github.gfx.android.orma.test.model.ModelWithConflictResolutions;
 import com.github.gfx.android.orma.test.model.ModelWithConstraints;
@@ -138,6 +139,90 @@ public class ModelSpecTest {
         assertThat(model.blob, is(new byte[]{0, 1, 2, 3}));
     }
 
+    @Test
+    public void testUpdateChangedColumns() throws Exception {
+        ModelWithChangeTracker model = new ModelWithChangeTracker();
+        model.title = "foo";
+        model.image = new byte[]{0, 1, 2};
+        long id = db.insertIntoModelWithChangeTracker(model);
+
+        ModelWithChangeTracker loaded = db.selectFromModelWithChangeTracker().idEq(id).value();
+        assertThat(loaded.changeTracker.isTracking(), is(true));
+
+        // modified after loaded
+        db.updateModelWithChangeTracker().idEq(id).title("bar").execute();
+
+        loaded.done = true;
+        assertThat(db.relationOfModelWithChangeTracker().update(loaded), is(1));
+
+        ModelWithChangeTracker updated = db.selectFromModelWithChangeTracker().idEq(id).value();
+        assertThat(updated.done, is(true));
+        assertThat("title is not written", updated.title, is("bar"));
+        assertThat(updated.image, is(new byte[]{0, 1, 2}));
+
+        assertThat("nothing changed", db.relationOfModelWithChangeTracker().update(loaded), is(0));
+    }
+
+    @Test
+    public void testConsecutiveUpdatesWithChangeTracking() throws Exception {
+        ModelWithChangeTracker model = new ModelWithChangeTracker();
+        model.title = "foo";
+        long id = db.insertIntoModelWithChangeTracker(model);
+
+        ModelWithChangeTracker loaded = db.selectFromModelWithChangeTracker().idEq(id).value();
+
+        loaded.done = true;
+        assertThat(db.relationOfModelWithChangeTracker().update(loaded), is(1));
+
+        // modified after the first update
+        db.updateModelWithChangeTracker().idEq(id).done(false).execute();
+
+        loaded.title = "bar";
+        assertThat(db.relationOfModelWithChangeTracker().update(loaded), is(1));
+
+        ModelWithChangeTracker updated = db.selectFromModelWithChangeTracker().idEq(id).value();
+        assertThat(updated.title, is("bar"));
+        assertThat("done is not written again", updated.done, is(false));
+
+        assertThat("nothing changed", db.relationOfModelWithChangeTracker().update(loaded), is(0));
+    }
+
+    @Test
+    public void testUpdateAfterInsert() throws Exception {
+        ModelWithChangeTracker model = new ModelWithChangeTracker();
+        model.title = "foo";
+        model.id = db.insertIntoModelWithChangeTracker(model);
+        assertThat(model.changeTracker.isTracking(), is(true));
+        assertThat("nothing changed", db.relationOfModelWithChangeTracker().update(model), is(0));
+
+        // modified after inserted
+        db.updateModelWithChangeTracker().idEq(model.id).title("baz").execute();
+
+        model.image = new byte[]{0, 1, 2};
+        assertThat(db.relationOfModelWithChangeTracker().update(model), is(1));
+
+        ModelWithChangeTracker updated = db.selectFromModelWithChangeTracker().idEq(model.id).value();
+        assertThat("title is not written", updated.title, is("baz"));
+        assertThat(updated.image, is(new byte[]{0, 1, 2}));
+    }
+
+    @Test
+    public void testUpdateWithoutChangeTracking() throws Exception {
+        ModelWithChangeTracker model = new ModelWithChangeTracker();
+        model.title = "foo";
+        model.id = db.insertIntoModelWithChangeTracker(model);
+        model.changeTracker.clear();
+        assertThat(model.changeTracker.isTracking(), is(false));
+
+        model.title = "bar";
+        model.image = new byte[]{0, 1, 2};
+        assertThat(db.relationOfModelWithChangeTracker().update(model), is(1));
+
+        ModelWithChangeTracker updated = db.selectFromModelWithChangeTracker().idEq(model.id).value();
+        assertThat(updated.title, is("bar"));
+        assertThat(updated.image, is(new byte[]{0, 1, 2}));
+    }
+
     @Test
     public void testModelWithTypeAdapters() throws Exception {
         final long now = System.currentTimeMillis();
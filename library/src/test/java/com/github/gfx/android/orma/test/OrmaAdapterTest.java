@@ -21,8 +21,11 @@ import com.github.gfx.android.orma.ModelFactory;
 import com.github.gfx.android.orma.Relation;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
+import com.github.gfx.android.orma.test.model.Author_Schema;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
+import com.github.gfx.android.orma.widget.ModelDiffCallback;
 import com.github.gfx.android.orma.widget.OrmaAdapter;
+import com.github.gfx.android.orma.widget.PageCache;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -32,14 +35,23 @@ import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.view.LayoutInflater;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.schedulers.Schedulers;
+
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
 
 @RunWith(AndroidJUnit4.class)
 public class OrmaAdapterTest {
 
+    OrmaDatabase orma;
+
     OrmaAdapter<Author> adapter;
 
     static Context getContext() {
@@ -48,7 +60,7 @@ public class OrmaAdapterTest {
 
     @Before
     public void setUp() throws Exception {
-        OrmaDatabase orma = OrmaFactory.create();
+        orma = OrmaFactory.create();
 
         Inserter<Author> inserter = orma.prepareInsertIntoAuthor();
         inserter.execute(new ModelFactory<Author>() {
@@ -162,4 +174,97 @@ public class OrmaAdapterTest {
         assertThat(deletedCount, is(3));
         assertThat(adapter.getItemCount(), is(0));
     }
+
+    @Test
+    public void testGetItemWithPageCache() throws Exception {
+        Relation<Author, ?> relation = orma.relationOfAuthor().orderByNameAsc();
+        OrmaAdapter<Author> adapter = new OrmaAdapter<>(getContext(), relation,
+                new PageCache<>(relation, 2, 1, Schedulers.immediate()));
+
+        assertThat(adapter.getItemCount(), is(4));
+        assertThat(adapter.getItem(3).name, is("Z"));
+        assertThat(adapter.getItem(0).name, is("A"));
+        assertThat(adapter.getItem(1).name, is("B"));
+        assertThat(adapter.getItem(2).name, is("C"));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        assertThat(adapter.getItem(2).note, is("baz"));
+
+        // not tracked by the connection
+        orma.getConnection().getWritableDatabase().execSQL(
+                "UPDATE " + Author_Schema.INSTANCE.getEscapedTableName() + " SET note = 'raw' WHERE name = 'C'");
+
+        assertThat("cached", adapter.getItem(2).note, is("baz"));
+
+        adapter.invalidate();
+        assertThat(adapter.getItem(2).note, is("raw"));
+    }
+
+    @Test
+    public void testWritesInvalidateCache() throws Exception {
+        assertThat(adapter.getItem(2).name, is("C"));
+
+        orma.updateAuthor().nameEq("C").note("updated").execute();
+        assertThat(adapter.getItem(2).note, is("updated"));
+
+        Author author = new Author();
+        author.name = "0";
+        author.note = "first";
+        orma.relationOfAuthor().inserter().execute(author);
+
+        assertThat(adapter.getItemCount(), is(4));
+        assertThat(adapter.getItem(0).name, is("0"));
+        assertThat(adapter.getItem(3).name, is("C"));
+
+        orma.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                orma.deleteFromAuthor().nameEq("0").execute();
+            }
+        });
+        assertThat(adapter.getItemCount(), is(3));
+        assertThat(adapter.getItem(0).name, is("A"));
+    }
+
+    @Test
+    public void testModelDiffCallback() throws Exception {
+        List<Author> oldItems = orma.selectFromAuthor().orderByNameAsc().toList();
+
+        orma.updateAuthor().nameEq("B").note("updated").execute();
+        orma.deleteFromAuthor().nameEq("C").execute();
+        Author author = new Author();
+        author.name = "D";
+        orma.insertIntoAuthor(author);
+
+        List<Author> newItems = orma.selectFromAuthor().orderByNameAsc().toList();
+
+        final List<String> updates = new ArrayList<>();
+        DiffUtil.calculateDiff(new ModelDiffCallback<>(Author_Schema.INSTANCE, oldItems, newItems))
+                .dispatchUpdatesTo(new ListUpdateCallback() {
+                    @Override
+                    public void onInserted(int position, int count) {
+                        updates.add("inserted:" + position + "," + count);
+                    }
+
+                    @Override
+                    public void onRemoved(int position, int count) {
+                        updates.add("removed:" + position + "," + count);
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                        updates.add("moved:" + fromPosition + "," + toPosition);
+                    }
+
+                    @Override
+                    public void onChanged(int position, int count, Object payload) {
+                        updates.add("changed:" + position + "," + count);
+                    }
+                });
+
+        // [A, B, C, Z] -> [A, B', D, Z]
+        assertThat(updates, containsInAnyOrder("changed:1,1", "removed:2,1", "inserted:2,1"));
+    }
 }
@@ -17,6 +17,7 @@ package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.AccessThreadConstraint;
 import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.internal.StatementCache;
 import com.github.gfx.android.orma.test.database_package_test.OrmaDatabaseInAnotherPackage;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
@@ -158,6 +159,89 @@ public class OrmaDatabaseTest {
         assertThat(isForeignKeyEnabled(db), is(false));
     }
 
+    @Test
+    public void testStatementCache() throws Exception {
+        OrmaDatabase db = OrmaDatabase.builder(getContext())
+                .name(NAME)
+                .statementCacheSize(2)
+                .tryParsingSql(false)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            Author author = new Author();
+            author.name = "author " + i;
+            db.prepareInsertIntoAuthor().execute(author);
+            assertThat(db.selectFromAuthor().count(), is(i + 1));
+        }
+
+        StatementCache cache = db.getConnection().getStatementCache();
+        assertThat(cache.size(), is(2));
+        assertThat(cache.missCount(), is(2L));
+        assertThat(cache.hitCount(), is(18L));
+
+        assertThat(db.deleteFromAuthor().nameEq("author 0").execute(), is(1));
+        assertThat(cache.size(), is(2));
+        assertThat(cache.missCount(), is(3L));
+        assertThat(db.selectFromAuthor().count(), is(9));
+    }
+
+    @Test
+    public void testStatementCacheDisabled() throws Exception {
+        OrmaDatabase db = OrmaDatabase.builder(getContext())
+                .name(NAME)
+                .statementCacheSize(0)
+                .tryParsingSql(false)
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            Author author = new Author();
+            author.name = "author " + i;
+            db.prepareInsertIntoAuthor().execute(author);
+        }
+        assertThat(db.selectFromAuthor().count(), is(3));
+
+        StatementCache cache = db.getConnection().getStatementCache();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.hitCount(), is(0L));
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Test
+    public void testReaderPool() throws Exception {
+        final OrmaDatabase db = OrmaDatabase.builder(getContext())
+                .name(NAME)
+                .writeAheadLogging(true)
+                .readerPoolSize(2)
+                .tryParsingSql(false)
+                .build();
+
+        final SQLiteDatabase writer = db.getConnection().getWritableDatabase();
+        SQLiteDatabase reader1 = db.getConnection().getReadableDatabase();
+        SQLiteDatabase reader2 = db.getConnection().getReadableDatabase();
+        assertThat(reader1, is(not(writer)));
+        assertThat(reader1, is(not(reader2)));
+        assertThat(reader1.isReadOnly(), is(true));
+        assertThat(db.getConnection().getReadableDatabase(), is(reader1));
+
+        Author author = new Author();
+        author.name = "foo";
+        db.insertIntoAuthor(author);
+        assertThat(db.selectFromAuthor().count(), is(1));
+
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                Author author = new Author();
+                author.name = "bar";
+                db.insertIntoAuthor(author);
+
+                assertThat(db.getConnection().getReadableDatabase(), is(writer));
+                assertThat(db.selectFromAuthor().count(), is(2));
+            }
+        });
+        assertThat(db.selectFromAuthor().count(), is(2));
+    }
+
     boolean isForeignKeyEnabled(OrmaDatabase orma) {
         SQLiteDatabase db = orma.getConnection().getReadableDatabase();
         return DatabaseUtils.longForQuery(db, "PRAGMA foreign_keys", null) != 0;
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.test;
+
+import com.github.gfx.android.orma.test.model.Author;
+import com.github.gfx.android.orma.test.model.OrmaDatabase;
+import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
+import com.github.gfx.android.orma.widget.OrmaRecyclerViewAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subjects.PublishSubject;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+@RunWith(AndroidJUnit4.class)
+public class OrmaRecyclerViewAdapterTest {
+
+    OrmaDatabase orma;
+
+    OrmaRecyclerViewAdapter<Author, RecyclerView.ViewHolder> adapter;
+
+    final List<String> updates = new ArrayList<>();
+
+    static Author author(String name, String note) {
+        Author author = new Author();
+        author.name = name;
+        author.note = note;
+        return author;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        orma = OrmaFactory.create();
+        orma.insertIntoAuthor(author("A", "foo"));
+        orma.insertIntoAuthor(author("B", "bar"));
+        orma.insertIntoAuthor(author("C", "baz"));
+        orma.insertIntoAuthor(author("Z", null));
+
+        adapter = new OrmaRecyclerViewAdapter<Author, RecyclerView.ViewHolder>(
+                InstrumentationRegistry.getTargetContext(), orma.relationOfAuthor().orderByNameAsc()) {
+            @Override
+            public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updates.add("changed");
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                updates.add("changed:" + positionStart + "," + itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updates.add("inserted:" + positionStart + "," + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updates.add("removed:" + positionStart + "," + itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                updates.add("moved:" + fromPosition + "," + toPosition);
+            }
+        });
+    }
+
+    void reload() {
+        final AtomicBoolean completed = new AtomicBoolean(false);
+        adapter.reloadAsObservable().subscribe(new Action0() {
+            @Override
+            public void call() {
+                completed.set(true);
+            }
+        });
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertThat("completed after the updates are dispatched", completed.get(), is(true));
+    }
+
+    /**
+     * Runs tasks posted to the UI thread until the adapter shows {@code count} items,
+     * for reloads that run in background threads.
+     */
+    void waitForItemCount(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (adapter.getItemCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+        assertThat(adapter.getItemCount(), is(count));
+    }
+
+    @Test
+    public void testReloadAsObservable() throws Exception {
+        assertThat(adapter.isDiffMode(), is(false));
+
+        reload();
+        assertThat(adapter.isDiffMode(), is(true));
+        assertThat(adapter.getItemCount(), is(4));
+        assertThat(updates, contains("changed"));
+
+        updates.clear();
+        orma.updateAuthor().nameEq("B").note("updated").execute();
+        orma.deleteFromAuthor().nameEq("C").execute();
+        orma.insertIntoAuthor(author("D", null));
+
+        assertThat("shows the snapshot until reloaded", adapter.getItem(2).name, is("C"));
+
+        reload();
+        assertThat(adapter.getItemCount(), is(4));
+        assertThat(adapter.getItem(1).note, is("updated"));
+        assertThat(adapter.getItem(2).name, is("D"));
+        assertThat(updates, containsInAnyOrder("changed:1,1", "removed:2,1", "inserted:2,1"));
+    }
+
+    @Test
+    public void testReloadAsObservableWithTooManyItems() throws Exception {
+        adapter.setMaxDiffItems(4);
+        reload();
+        updates.clear();
+
+        orma.insertIntoAuthor(author("D", null));
+        reload();
+        assertThat("no diff for more items than the max", updates, contains("changed"));
+        assertThat(adapter.getItemCount(), is(5));
+        assertThat("shown through the page cache", adapter.getItem(3).name, is("D"));
+
+        updates.clear();
+        orma.deleteFromAuthor().nameEq("D").execute();
+        reload();
+        assertThat("no snapshot to make a diff from", updates, contains("changed"));
+        assertThat(adapter.getItemCount(), is(4));
+
+        updates.clear();
+        orma.deleteFromAuthor().nameEq("Z").execute();
+        reload();
+        assertThat(updates, contains("removed:3,1"));
+        assertThat(adapter.getItemCount(), is(3));
+    }
+
+    @Test
+    public void testReloadOn() throws Exception {
+        PublishSubject<Object> changes = PublishSubject.create();
+        Subscription subscription = adapter.reloadOn(changes);
+
+        changes.onNext("initial");
+        waitForItemCount(4);
+        assertThat(adapter.isDiffMode(), is(true));
+
+        orma.insertIntoAuthor(author("D", null));
+        changes.onNext("inserted");
+        waitForItemCount(5);
+        assertThat(adapter.getItem(3).name, is("D"));
+
+        subscription.unsubscribe();
+        orma.deleteFromAuthor().execute();
+        changes.onNext("deleted");
+        Thread.sleep(100);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertThat("no longer reloaded", adapter.getItemCount(), is(5));
+    }
+
+    @Test
+    public void testAddItemAsObservableInDiffMode() throws Exception {
+        reload();
+        updates.clear();
+
+        adapter.addItemAsObservable(author("D", null)).toBlocking().value();
+        waitForItemCount(5);
+        assertThat(adapter.getItem(3).name, is("D"));
+        assertThat(updates, contains("inserted:3,1"));
+    }
+}
@@ -17,14 +17,25 @@ package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.Inserter;
 import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.Projection;
+import com.github.gfx.android.orma.QueryEvent;
+import com.github.gfx.android.orma.QueryHistogram;
+import com.github.gfx.android.orma.QueryListener;
+import com.github.gfx.android.orma.QueryPlanInspector;
+import com.github.gfx.android.orma.SlowQueryLogger;
+import com.github.gfx.android.orma.WriteQueue;
 import com.github.gfx.android.orma.SingleAssociation;
 import com.github.gfx.android.orma.annotation.OnConflict;
 import com.github.gfx.android.orma.exception.InvalidStatementException;
 import com.github.gfx.android.orma.exception.NoValueException;
+import com.github.gfx.android.orma.internal.OrmaCursorIterator;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.Author_Selector;
 import com.github.gfx.android.orma.test.model.Book;
+import com.github.gfx.android.orma.test.model.Book_Schema;
 import com.github.gfx.android.orma.test.model.Book_Selector;
+import com.github.gfx.android.orma.test.model.Book_Updater;
+import com.github.gfx.android.orma.test.model.ModelWithBlob;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
 import com.github.gfx.android.orma.test.model.Publisher;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
@@ -33,17 +44,26 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.support.annotation.NonNull;
 import android.support.test.runner.AndroidJUnit4;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import rx.CompletableSubscriber;
+import rx.Subscription;
 import rx.functions.Action1;
 import rx.observers.TestSubscriber;
+import rx.plugins.RxJavaHooks;
 import rx.schedulers.Schedulers;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -126,6 +146,56 @@ public class QueryTest {
         assertThat(books.get(1).content, is("apple"));
     }
 
+    @Test
+    public void toListWithIncludes() throws Exception {
+        List<Book> books = db.selectFromBook().includes(Book_Schema.INSTANCE.publisher).toList();
+        db.updatePublisher().name("updated").execute();
+
+        // the publishers are loaded by toList()
+        assertThat(books.get(0).publisher.value().name, is("foo bar"));
+        assertThat(books.get(1).publisher.value().name, is("foo bar"));
+
+        books = db.selectFromBook().toList();
+        assertThat("lazy loading", books.get(0).publisher.value().name, is("updated"));
+    }
+
+    @Test
+    public void relationIncludes() throws Exception {
+        List<Book> books = db.relationOfBook().includes(Book_Schema.INSTANCE.publisher).selector().toList();
+        db.updatePublisher().name("updated").execute();
+
+        assertThat(books.get(0).publisher.value().name, is("foo bar"));
+    }
+
+    @Test
+    public void forEachWithIncludes() throws Exception {
+        final List<Book> books = new ArrayList<>();
+        db.selectFromBook().includes(Book_Schema.INSTANCE.publisher).forEach(new Action1<Book>() {
+            @Override
+            public void call(Book book) {
+                books.add(book);
+            }
+        });
+        db.updatePublisher().name("updated").execute();
+
+        assertThat(books, hasSize(2));
+        assertThat(books.get(0).publisher.value().name, is("foo bar"));
+        assertThat(books.get(1).publisher.value().name, is("foo bar"));
+    }
+
+    @Test
+    public void valueWithIncludes() throws Exception {
+        Book book = db.selectFromBook().includes(Book_Schema.INSTANCE.publisher).value();
+        db.updatePublisher().name("updated").execute();
+
+        assertThat(book.publisher.value().name, is("foo bar"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iteratorWithIncludes() throws Exception {
+        db.selectFromBook().includes(Book_Schema.INSTANCE.publisher).iterator();
+    }
+
     @Test
     public void forEach() throws Exception {
         final List<Book> books = new ArrayList<>();
@@ -161,6 +231,86 @@ public class QueryTest {
         assertThat(books.get(1).content, is("apple"));
     }
 
+    @Test
+    public void keysetIterator() throws Exception {
+        List<Book> books = new ArrayList<>();
+
+        Iterator<Book> iterator = db.selectFromBook().keysetIterator();
+        while (iterator.hasNext()) {
+            books.add(iterator.next());
+        }
+
+        assertThat(books, hasSize(2));
+        assertThat(books.get(0).title, is("today"));
+        assertThat(books.get(1).title, is("friday"));
+    }
+
+    @Test
+    public void keysetIteratorOverBatches() throws Exception {
+        final int n = 2500; // larger than the batch size
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                Inserter<Book> inserter = db.prepareInsertIntoBook();
+                for (int i = 0; i < n; i++) {
+                    Book book = new Book();
+                    book.title = String.format("#%04d", i % 100); // not unique
+                    book.content = "content #" + i;
+                    book.publisher = SingleAssociation.id(publisher.id);
+                    inserter.execute(book);
+                }
+            }
+        });
+
+        List<Book> books = new ArrayList<>();
+        Iterator<Book> iterator = db.selectFromBook()
+                .titleNotIn("today", "friday")
+                .orderByTitleDesc()
+                .keysetIterator();
+        while (iterator.hasNext()) {
+            books.add(iterator.next());
+        }
+
+        assertThat(books, hasSize(n));
+        for (int i = 1; i < n; i++) {
+            Book prev = books.get(i - 1);
+            Book book = books.get(i);
+            assertThat(prev.title.compareTo(book.title), is(greaterThanOrEqualTo(0)));
+            if (prev.title.equals(book.title)) {
+                assertThat(prev.bookId, is(lessThan(book.bookId)));
+            }
+        }
+    }
+
+    @Test
+    public void streamingIterator() throws Exception {
+        List<Book> books = new ArrayList<>();
+
+        OrmaCursorIterator<Book> iterator = db.selectFromBook().streamingIterator();
+        while (iterator.hasNext()) {
+            books.add(iterator.next());
+        }
+        assertThat(iterator.hasNext(), is(false));
+
+        assertThat(books, hasSize(2));
+        assertThat(books.get(0).title, is("today"));
+        assertThat(books.get(1).title, is("friday"));
+    }
+
+    @Test
+    public void streamingIteratorClosedHalfway() throws Exception {
+        OrmaCursorIterator<Book> iterator = db.selectFromBook().streamingIterator();
+        assertThat(iterator.next().title, is("today"));
+        iterator.close();
+
+        assertThat(iterator.hasNext(), is(false));
+    }
+
+    @Test(expected = InvalidStatementException.class)
+    public void keysetIteratorWithOpaqueOrderingTerms() throws Exception {
+        db.selectFromBook().orderBy("bookId DESC").keysetIterator();
+    }
+
     @Test
     public void value() throws Exception {
         Book book = db.selectFromBook().value();
@@ -281,6 +431,21 @@ public class QueryTest {
         assertThat(books.get(0).content, is("apple"));
     }
 
+    @Test
+    public void whereWithTypedBindArgs() throws Exception {
+        // expressions have no type affinity, so integers bound as strings never match
+        assertThat(db.selectFromBook().where("length(title) = ?", 5).count(), is(1));
+        assertThat(db.selectFromBook().where("length(title) = ?", 5).value().title, is("today"));
+        assertThat(db.deleteFromBook().where("length(title) = ?", 6).execute(), is(1));
+
+        ModelWithBlob model = new ModelWithBlob();
+        model.blob = new byte[]{0, 1, 2};
+        db.insertIntoModelWithBlob(model);
+
+        assertThat(db.selectFromModelWithBlob().where("`blob` = ?", new byte[]{0, 1, 2}).count(), is(1));
+        assertThat(db.selectFromModelWithBlob().where("`blob` = ?", new byte[]{0, 1}).count(), is(0));
+    }
+
     @Test
     public void whereConjunctionAnd() throws Exception {
         List<Book> books = db.selectFromBook()
@@ -474,6 +639,622 @@ public class QueryTest {
         assertThat(book.content, is("modified"));
     }
 
+    @Test
+    public void queryPlanInspector() throws Exception {
+        QueryPlanInspector inspector = new QueryPlanInspector();
+        OrmaDatabase db = OrmaFactory.builder()
+                .queryPlanInspector(inspector)
+                .build();
+
+        final Publisher publisher = db.createPublisher(new ModelFactory<Publisher>() {
+            @NonNull
+            @Override
+            public Publisher call() {
+                Publisher publisher = new Publisher();
+                publisher.name = "foo bar";
+                publisher.startedYear = 2015;
+                publisher.startedMonth = 12;
+                return publisher;
+            }
+        });
+        db.createBook(new ModelFactory<Book>() {
+            @NonNull
+            @Override
+            public Book call() {
+                Book book = new Book();
+                book.title = "today";
+                book.content = "milk, banana";
+                book.publisher = SingleAssociation.id(publisher.id);
+                return book;
+            }
+        });
+
+        // searched by the index
+        db.selectFromBook().titleEq("today").toList();
+        assertThat(inspector.getFindings(), is(empty()));
+
+        db.selectFromBook().where("content = ?", "apple").toList();
+        db.selectFromBook().where("content = ?", "banana").toList();
+        db.selectFromBook().titleEq("today").orderBy("content").toList();
+
+        List<QueryPlanInspector.Finding> findings = inspector.getFindings();
+        assertThat(findings, hasSize(2));
+        assertThat(findings.get(0).rowCount, is(1L));
+        assertThat(inspector.getSuggestions(), contains(
+                "@Column(indexed = true) for Book#content",
+                "CREATE INDEX `index_title_content_on_Book` ON `Book` (`title`, `content`)"
+        ));
+        assertThat(inspector.getReport(), containsString("Book#content"));
+    }
+
+    @Test
+    public void queryListener() throws Exception {
+        final List<QueryEvent> events = new ArrayList<>();
+        QueryHistogram histogram = new QueryHistogram();
+        final OrmaDatabase db = OrmaFactory.builder()
+                .addQueryListener(new QueryListener() {
+                    @Override
+                    public void onQuery(@NonNull QueryEvent event) {
+                        events.add(event);
+                    }
+                })
+                .addQueryListener(histogram)
+                .build();
+
+        final Publisher publisher = Publisher.create("foo bar", 2015, 12);
+        publisher.id = db.insertIntoPublisher(publisher);
+
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).sql, startsWith("INSERT INTO `Publisher`"));
+        assertThat(events.get(0).bindArgCount, is(3));
+        assertThat(events.get(0).rows, is(1L));
+        assertThat(events.get(0).threadName, is(Thread.currentThread().getName()));
+        assertThat(events.get(0).elapsedNanos, is(greaterThanOrEqualTo(0L)));
+
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                for (String title : new String[]{"today", "friday"}) {
+                    Book book = new Book();
+                    book.title = title;
+                    book.content = "apple";
+                    book.publisher = SingleAssociation.id(publisher.id);
+                    db.insertIntoBook(book);
+                }
+            }
+        });
+
+        assertThat(events, hasSize(4));
+        assertThat(events.get(3).sql, is("transaction"));
+        assertThat(events.get(3).transaction, is(true));
+        assertThat(events.get(3).waitNanos, is(greaterThanOrEqualTo(0L)));
+        assertThat("the first transaction is the longest so far", events.get(3).getCallSite(),
+                containsString(QueryTest.class.getName() + ".queryListener"));
+        assertThat(events.get(3).getShape(), is("transaction"));
+
+        events.clear();
+        db.selectFromBook().titleEq("today").toList();
+        db.selectFromBook().titleEq("friday").toList();
+        db.selectFromBook().count();
+        db.updateBook().titleEq("today").content("banana").execute();
+        db.deleteFromBook().titleEq("friday").execute();
+
+        assertThat(events, hasSize(5));
+        assertThat(events.get(0).rows, is(1L));
+        assertThat(events.get(0).bindArgCount, is(1));
+        assertThat(events.get(3).sql, startsWith("UPDATE `Book` SET "));
+        assertThat(events.get(3).bindArgCount, is(2));
+        assertThat(events.get(3).rows, is(1L));
+        assertThat(events.get(4).sql, startsWith("DELETE FROM `Book`"));
+        assertThat(events.get(4).rows, is(1L));
+
+        QueryHistogram.Stats stats = null;
+        for (QueryHistogram.Stats s : histogram.getStats()) {
+            if (s.shape.equals(events.get(0).getShape())) {
+                stats = s;
+            }
+        }
+        assertThat(stats, is(notNullValue()));
+        assertThat(stats.getCount(), is(2L));
+        assertThat(stats.getTotalRows(), is(2L));
+        long bucketed = 0;
+        for (long n : stats.getBuckets()) {
+            bucketed += n;
+        }
+        assertThat(bucketed, is(2L));
+        assertThat(histogram.getReport(), containsString("count=2"));
+
+        events.clear();
+        Cursor cursor = db.selectFromBook().execute();
+        assertThat("not reported until it is read", events, is(empty()));
+        cursor.moveToFirst();
+        cursor.moveToNext();
+        cursor.close();
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).rows, is(1L));
+    }
+
+    @Test
+    public void transactionWaitAndHold() throws Exception {
+        QueryHistogram histogram = new QueryHistogram();
+        final OrmaDatabase db = OrmaFactory.builder()
+                .addQueryListener(histogram)
+                .build();
+        db.selectFromBook().count(); // to run migration
+
+        final CountDownLatch begun = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                db.transactionSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        begun.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+            }
+        });
+        holder.start();
+        begun.await();
+        long holdingFrom = System.nanoTime();
+
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                transactionOfWaiter(db);
+            }
+        });
+        waiter.start();
+        while (waiter.getState() == Thread.State.NEW || waiter.getState() == Thread.State.RUNNABLE) {
+            Thread.sleep(1);
+        }
+        // the waiter is blocked to begin its transaction
+        long waitingFrom = System.nanoTime();
+        Thread.sleep(10); // the assertions below are lower bounds measured here, so they don't depend on how long it is
+        long releasedAt = System.nanoTime();
+        release.countDown();
+        holder.join();
+        waiter.join();
+
+        List<QueryHistogram.Stats> stats = histogram.getTransactionStats();
+        assertThat(stats, hasSize(1));
+        assertThat(stats.get(0).shape, is("transaction"));
+        assertThat(stats.get(0).getCount(), is(2L));
+        assertThat(stats.get(0).getMaxNanos(), is(greaterThanOrEqualTo(releasedAt - holdingFrom)));
+        assertThat(stats.get(0).getMaxCallSite(), containsString(QueryTest.class.getName() + "$"));
+        assertThat(stats.get(0).getMaxWaitNanos(), is(greaterThanOrEqualTo(releasedAt - waitingFrom)));
+        assertThat("a user method named transaction* is the call site", stats.get(0).getMaxWaitCallSite(),
+                containsString(QueryTest.class.getName() + ".transactionOfWaiter"));
+    }
+
+    @Test
+    public void transactionCallSiteIsCapturedOnlyForSlowTransactions() throws Exception {
+        final List<QueryEvent> events = Collections.synchronizedList(new ArrayList<QueryEvent>());
+        final OrmaDatabase db = OrmaFactory.builder()
+                .addQueryListener(new QueryListener() {
+                    @Override
+                    public void onQuery(@NonNull QueryEvent event) {
+                        if (event.transaction) {
+                            events.add(event);
+                        }
+                    }
+                })
+                .transactionCallSiteThresholdMillis(50)
+                .build();
+        db.selectFromBook().count(); // to run migration
+
+        transactionOfWaiter(db);
+        assertThat("the first one is the longest so far", events.get(0).getCallSite(), is(notNullValue()));
+
+        // makes the max hold and the max wait longer than the threshold
+        final CountDownLatch begun = new CountDownLatch(1);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                db.transactionSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        begun.countDown();
+                        try {
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+            }
+        });
+        holder.start();
+        begun.await();
+        transactionOfWaiter(db);
+        holder.join();
+
+        assertThat(events, hasSize(3));
+        for (QueryEvent event : events) {
+            if (event.waitNanos >= TimeUnit.MILLISECONDS.toNanos(50)) {
+                assertThat(event.getCallSite(), containsString(QueryTest.class.getName() + ".transactionOfWaiter"));
+            } else if (event.elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(50)) {
+                assertThat(event.getCallSite(), containsString(QueryTest.class.getName() + "$"));
+            }
+        }
+
+        transactionOfWaiter(db);
+        assertThat(events, hasSize(4));
+        assertThat(events.get(3).getCallSite(), is(nullValue()));
+    }
+
+    static void transactionOfWaiter(OrmaDatabase db) {
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    @Test
+    public void writeQueue() throws Exception {
+        final List<QueryEvent> transactions = new ArrayList<>();
+        final OrmaDatabase db = OrmaFactory.builder()
+                .addQueryListener(new QueryListener() {
+                    @Override
+                    public void onQuery(@NonNull QueryEvent event) {
+                        if (event.transaction) {
+                            transactions.add(event);
+                        }
+                    }
+                })
+                .build();
+        final Publisher publisher = Publisher.create("foo bar", 2015, 12);
+        publisher.id = db.insertIntoPublisher(publisher);
+        WriteQueue queue = db.getConnection().getWriteQueue();
+
+        // blocks the writer thread to make the following tasks pending
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        TestSubscriber<Object> blocker = new TestSubscriber<>();
+        queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    blocking.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }).toObservable().subscribe(blocker);
+        started.await();
+
+        TestSubscriber<Long> first = new TestSubscriber<>();
+        queue.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return db.insertIntoBook(newBook(publisher, "first"));
+            }
+        }).subscribe(first);
+
+        TestSubscriber<Object> failing = new TestSubscriber<>();
+        queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoBook(newBook(publisher, "failing"));
+                throw new IllegalStateException("failing");
+            }
+        }).toObservable().subscribe(failing);
+
+        TestSubscriber<Long> last = new TestSubscriber<>();
+        queue.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return db.insertIntoBook(newBook(publisher, "last"));
+            }
+        }).subscribe(last);
+
+        assertThat(queue.getPendingTaskCount(), is(3));
+        blocking.countDown();
+
+        blocker.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        first.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        failing.awaitTerminalEvent(10, TimeUnit.SECONDS);
+        last.awaitTerminalEvent(10, TimeUnit.SECONDS);
+
+        blocker.assertCompleted();
+        first.assertValueCount(1);
+        failing.assertError(IllegalStateException.class);
+        last.assertValueCount(1);
+
+        // the failing task is rolled back alone
+        assertThat(db.selectFromBook().count(), is(2));
+        assertThat(db.selectFromBook().titleEq("failing").isEmpty(), is(true));
+
+        // the pending tasks are committed at once
+        assertThat(transactions, hasSize(2));
+        assertThat(transactions.get(1).sql, is("transaction (write queue)"));
+    }
+
+    @Test
+    public void writeQueueSurvivesSubscriberErrors() throws Exception {
+        final List<Throwable> errors = new ArrayList<>();
+        RxJavaHooks.setOnError(new Action1<Throwable>() {
+            @Override
+            public void call(Throwable e) {
+                errors.add(e);
+            }
+        });
+        try {
+            WriteQueue queue = db.getConnection().getWriteQueue();
+            final CountDownLatch delivered = new CountDownLatch(1);
+            queue.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).subscribe(new CompletableSubscriber() {
+                @Override
+                public void onCompleted() {
+                    delivered.countDown();
+                    throw new IllegalStateException("subscriber");
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                }
+
+                @Override
+                public void onSubscribe(Subscription d) {
+                }
+            });
+            delivered.await();
+
+            TestSubscriber<Long> next = new TestSubscriber<>();
+            queue.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return (long) db.selectFromBook().count();
+                }
+            }).subscribe(next);
+            next.awaitTerminalEvent(10, TimeUnit.SECONDS);
+
+            next.assertValue(2L);
+            assertThat(errors, hasSize(1));
+            assertThat(errors.get(0).getMessage(), is("subscriber"));
+        } finally {
+            RxJavaHooks.reset();
+        }
+    }
+
+    @Test
+    public void writeQueueCommitsWhenBatchTakesTooLong() throws Exception {
+        final List<QueryEvent> transactions = new ArrayList<>();
+        final OrmaDatabase db = OrmaFactory.builder()
+                .addQueryListener(new QueryListener() {
+                    @Override
+                    public void onQuery(@NonNull QueryEvent event) {
+                        if (event.transaction) {
+                            transactions.add(event);
+                        }
+                    }
+                })
+                .writeQueueMaxBatchMillis(0)
+                .build();
+        final Publisher publisher = Publisher.create("foo bar", 2015, 12);
+        publisher.id = db.insertIntoPublisher(publisher);
+        WriteQueue queue = db.getConnection().getWriteQueue();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        TestSubscriber<Object> blocker = new TestSubscriber<>();
+        queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    blocking.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }).toObservable().subscribe(blocker);
+        started.await();
+
+        List<TestSubscriber<Long>> subscribers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final String title = "book " + i;
+            TestSubscriber<Long> subscriber = new TestSubscriber<>();
+            queue.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return db.insertIntoBook(newBook(publisher, title));
+                }
+            }).subscribe(subscriber);
+            subscribers.add(subscriber);
+        }
+        assertThat(queue.getPendingTaskCount(), is(3));
+        blocking.countDown();
+
+        for (TestSubscriber<Long> subscriber : subscribers) {
+            subscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+            subscriber.assertValueCount(1);
+        }
+
+        // the blocker, and then one transaction for each task with no time for a second one
+        assertThat(transactions, hasSize(1 + 3));
+        assertThat(db.selectFromBook().count(), is(3));
+    }
+
+    @Test
+    public void writeQueueDeliversResultsWhenListenerThrows() throws Exception {
+        final List<Throwable> errors = new ArrayList<>();
+        RxJavaHooks.setOnError(new Action1<Throwable>() {
+            @Override
+            public void call(Throwable e) {
+                errors.add(e);
+            }
+        });
+        try {
+            final OrmaDatabase db = OrmaFactory.builder()
+                    .addQueryListener(new QueryListener() {
+                        @Override
+                        public void onQuery(@NonNull QueryEvent event) {
+                            if (event.transaction && Thread.currentThread().getName().equals("Orma-Writer")) {
+                                throw new IllegalStateException("listener");
+                            }
+                        }
+                    })
+                    .build();
+
+            TestSubscriber<Long> subscriber = new TestSubscriber<>();
+            db.getConnection().getWriteQueue().submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return db.insertIntoPublisher(Publisher.create("foo", 2016, 1));
+                }
+            }).subscribe(subscriber);
+            subscriber.awaitTerminalEvent(10, TimeUnit.SECONDS);
+
+            // committed, so the task succeeds and the error goes to the hook
+            subscriber.assertValueCount(1);
+            assertThat(db.selectFromPublisher().count(), is(1));
+            assertThat(errors, hasSize(1));
+            assertThat(errors.get(0).getMessage(), is("listener"));
+        } finally {
+            RxJavaHooks.reset();
+        }
+    }
+
+    @Test
+    public void writeQueueFailsTasksOnClose() throws Exception {
+        WriteQueue queue = db.getConnection().getWriteQueue();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        TestSubscriber<Object> running = new TestSubscriber<>();
+        queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }).toObservable().subscribe(running);
+        started.await();
+
+        TestSubscriber<Long> pending = new TestSubscriber<>();
+        queue.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return 0L;
+            }
+        }).subscribe(pending);
+
+        // interrupts the running task, and waits for the writer thread to finish
+        db.getConnection().close();
+
+        running.assertError(RuntimeException.class);
+        pending.assertError(IllegalStateException.class);
+
+        TestSubscriber<Long> submittedAfterClose = new TestSubscriber<>();
+        queue.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return 0L;
+            }
+        }).subscribe(submittedAfterClose);
+        submittedAfterClose.assertError(IllegalStateException.class);
+    }
+
+    static Book newBook(Publisher publisher, String title) {
+        Book book = new Book();
+        book.title = title;
+        book.content = "content";
+        book.publisher = SingleAssociation.id(publisher.id);
+        return book;
+    }
+
+    @Test
+    public void slowQueryLogger() throws Exception {
+        final List<QueryEvent> slowQueries = new ArrayList<>();
+        OrmaDatabase db = OrmaFactory.builder()
+                .addQueryListener(new SlowQueryLogger(0) {
+                    @Override
+                    protected void onSlowQuery(@NonNull QueryEvent event) {
+                        super.onSlowQuery(event);
+                        slowQueries.add(event);
+                    }
+                })
+                .build();
+
+        db.selectFromBook().count();
+
+        assertThat(slowQueries, hasSize(1));
+        assertThat(slowQueries.get(0).sql, containsString("FROM `Book`"));
+    }
+
+    @Test
+    public void closeClearsStatementCache() throws Exception {
+        db.deleteFromBook().titleEq("today").execute();
+        assertThat(db.getConnection().getStatementCache().size(), is(greaterThan(0)));
+
+        db.getConnection().close();
+        assertThat(db.getConnection().getStatementCache().size(), is(0));
+    }
+
+    @Test
+    public void updateReusesStatement() throws Exception {
+        db.updateBook()
+                .titleEq("today")
+                .content("modified")
+                .inPrint(false)
+                .execute();
+
+        long hitCount = db.getConnection().getStatementCache().hitCount();
+
+        // the same set of columns in a different order
+        int count = db.updateBook()
+                .titleEq("friday")
+                .inPrint(true)
+                .content("modified too")
+                .execute();
+
+        assertThat(count, is(1));
+        assertThat(db.getConnection().getStatementCache().hitCount(), is(hitCount + 1));
+
+        Book book = db.selectFromBook().titleEq("friday").value();
+        assertThat(book.content, is("modified too"));
+        assertThat(book.inPrint, is(true));
+        assertThat(db.selectFromBook().titleEq("today").value().inPrint, is(false));
+    }
+
+    @Test
+    public void updateWithContentValues() throws Exception {
+        Book_Updater updater = db.updateBook()
+                .titleEq("today")
+                .content("modified");
+        ContentValues values = updater.getContentValues();
+        assertThat(values.getAsString("`content`"), is("modified"));
+
+        values.put("`inPrint`", false);
+        assertThat("a copy of the assigned values", updater.getContentValues().containsKey("`inPrint`"), is(false));
+
+        long hitCount = db.getConnection().getStatementCache().hitCount();
+        long missCount = db.getConnection().getStatementCache().missCount();
+        assertThat(updater.execute(), is(1));
+        assertThat("it is still bound to a cached statement",
+                db.getConnection().getStatementCache().hitCount() + db.getConnection().getStatementCache().missCount(),
+                is(hitCount + missCount + 1));
+
+        Book book = db.selectFromBook().titleEq("today").value();
+        assertThat(book.content, is("modified"));
+        assertThat(book.inPrint, is(true));
+    }
+
     @Test
     public void delete() throws Exception {
         int result = db.deleteFromBook()
@@ -611,6 +1392,205 @@ public class QueryTest {
         assertThat(db.selectFromBook().count(), is(7));
     }
 
+    @Test
+    public void selectProjection() throws Exception {
+        Book_Selector selector = db.selectFromBook().orderByTitleAsc();
+        Book_Schema schema = selector.getSchema();
+        Projection<Book> projection = selector.select(schema.title, schema.inPrint, schema.publisher);
+
+        assertThat(projection.buildQuery(), not(containsString(schema.content.getEscapedName())));
+
+        List<Projection.Row<Book>> rows = projection.toList();
+        assertThat(rows, hasSize(2));
+        assertThat(rows.get(0).get(schema.title), is("friday"));
+        assertThat(rows.get(0).get(schema.inPrint), is(false));
+        assertThat(rows.get(0).get(schema.publisher).getId(), is(publisher.id));
+        assertThat(rows.get(1).get(schema.title), is("today"));
+        assertThat(rows.get(1).get(schema.inPrint), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void selectProjectionWithUnselectedColumn() throws Exception {
+        Book_Schema schema = db.selectFromBook().getSchema();
+        Projection.Row<Book> row = db.selectFromBook().select(schema.title).toList().get(0);
+        row.get(schema.content);
+    }
+
+    @Test
+    public void pluck() throws Exception {
+        Book_Selector selector = db.selectFromBook().orderByTitleAsc();
+        Book_Schema schema = selector.getSchema();
+        List<Book> books = selector.toList();
+
+        long[] ids = selector.pluckAsLongArray(schema.bookId);
+        assertThat(ids.length, is(2));
+        assertThat(ids[0], is(books.get(0).bookId));
+        assertThat(ids[1], is(books.get(1).bookId));
+
+        assertThat(selector.pluckAsLongArray(schema.publisher), is(new long[]{publisher.id, publisher.id}));
+        assertThat(selector.pluckAsDoubleArray(schema.bookId), is(new double[]{ids[0], ids[1]}));
+        assertThat(selector.pluckAsStringArray(schema.title), is(new String[]{"friday", "today"}));
+        assertThat(db.selectFromBook().titleEq("unknown").pluckAsStringArray(schema.title), is(new String[0]));
+    }
+
+    @Test
+    public void inserterExecuteAllInTransaction() throws Exception {
+        final SQLiteDatabase sqlite = db.getConnection().getWritableDatabase();
+        final List<Long> rowIds = new ArrayList<>();
+
+        db.prepareInsertIntoBook().executeAllAsObservable(someBooks())
+                .subscribe(new Action1<Long>() {
+                    @Override
+                    public void call(Long rowId) {
+                        assertThat("emitted after committed", sqlite.inTransaction(), is(false));
+                        rowIds.add(rowId);
+                    }
+                });
+
+        assertThat(sqlite.inTransaction(), is(false));
+        assertThat(rowIds, hasSize(5));
+        assertThat(db.selectFromBook().count(), is(7));
+    }
+
+    @Test
+    public void inserterExecuteAllWithRowsPerTransaction() throws Exception {
+        final List<QueryEvent> transactions = new ArrayList<>();
+        OrmaDatabase orma = OrmaFactory.builder()
+                .addQueryListener(new QueryListener() {
+                    @Override
+                    public void onQuery(@NonNull QueryEvent event) {
+                        if (event.transaction) {
+                            transactions.add(event);
+                        }
+                    }
+                })
+                .build();
+        publisher.id = orma.insertIntoPublisher(publisher);
+
+        Inserter<Book> inserter = orma.prepareInsertIntoBook();
+        inserter.executeAll(someBooks(), 2);
+
+        assertThat(orma.getConnection().getWritableDatabase().inTransaction(), is(false));
+        assertThat(orma.selectFromBook().count(), is(5));
+        assertThat("5 rows are committed by 2, 2 and 1", transactions, hasSize(3));
+    }
+
+    @Test
+    public void inserterExecuteAllWithRowsPerTransactionFailsInChunk() throws Exception {
+        List<Book> books = someBooks();
+        books.get(4).title = null;
+
+        final List<Long> rowIds = new ArrayList<>();
+        try {
+            db.prepareInsertIntoBook().executeAllAsObservable(books, 2)
+                    .subscribe(new Action1<Long>() {
+                        @Override
+                        public void call(Long rowId) {
+                            rowIds.add(rowId);
+                        }
+                    });
+            fail("not reached");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        assertThat(db.getConnection().getWritableDatabase().inTransaction(), is(false));
+        assertThat("the first two chunks are committed", db.selectFromBook().count(), is(2 + 4));
+        assertThat("only committed rows are emitted", rowIds, hasSize(4));
+    }
+
+    @Test
+    public void inserterExecuteAllInBatch() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 1234; i++) {
+            Book book = new Book();
+            book.title = "book " + i;
+            book.content = i % 2 == 0 ? null : "content " + i;
+            book.inPrint = i % 3 == 0;
+            book.publisher = SingleAssociation.id(publisher.id);
+            books.add(book);
+        }
+
+        long[] rowIds = db.prepareInsertIntoBook().executeAllInBatch(books);
+
+        assertThat(rowIds.length, is(books.size()));
+        assertThat(db.selectFromBook().count(), is(books.size() + 2));
+        for (int i = 0; i < rowIds.length; i++) {
+            Book book = db.selectFromBook().bookIdEq(rowIds[i]).value();
+            assertThat(book.title, is(books.get(i).title));
+            assertThat(book.content, is(books.get(i).content));
+            assertThat(book.inPrint, is(books.get(i).inPrint));
+        }
+    }
+
+    @Test
+    public void inserterExecuteAllInBatchWithPrimaryKeys() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Book book = new Book();
+            book.bookId = 100 + i * 10;
+            book.title = "book " + i;
+            book.publisher = SingleAssociation.id(publisher.id);
+            books.add(book);
+        }
+
+        long[] rowIds = db.prepareInsertIntoBook(OnConflict.NONE, false).executeAllInBatch(books);
+
+        for (int i = 0; i < rowIds.length; i++) {
+            assertThat(rowIds[i], is(books.get(i).bookId));
+            assertThat(db.selectFromBook().bookIdEq(rowIds[i]).value().title, is(books.get(i).title));
+        }
+    }
+
+    @Test(expected = SQLiteException.class)
+    public void inserterExecuteAllInBatchOnConflict() throws Exception {
+        List<Author> authors = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Author author = new Author();
+            author.name = "山田太郎";
+            authors.add(author);
+        }
+        db.prepareInsertIntoAuthor().executeAllInBatch(authors);
+    }
+
+    @Test
+    public void inserterExecuteAllInBatchWithReplace() throws Exception {
+        List<Author> authors = new ArrayList<>();
+        for (String name : new String[]{"x", "y", "y"}) {
+            Author author = new Author();
+            author.name = name;
+            authors.add(author);
+        }
+
+        // the last "y" deletes the row inserted by the second one
+        long[] rowIds = db.prepareInsertIntoAuthor(OnConflict.REPLACE).executeAllInBatch(authors);
+
+        assertThat(rowIds[0], is(db.getConnection().rawQueryForLong("SELECT _rowid_ FROM `Author` WHERE `name` = ?", "x")));
+        assertThat(rowIds[2], is(db.getConnection().rawQueryForLong("SELECT _rowid_ FROM `Author` WHERE `name` = ?", "y")));
+        assertThat(db.selectFromAuthor().count(), is(2));
+    }
+
+    @Test
+    public void inserterExecuteAllInBatchWithTrigger() throws Exception {
+        db.getConnection().execSQL("CREATE TRIGGER copy_author AFTER INSERT ON `Author` WHEN NEW.`name` NOT LIKE '%copy'"
+                + " BEGIN INSERT INTO `Author` (`name`) VALUES (NEW.`name` || ' copy'); END");
+        List<Author> authors = new ArrayList<>();
+        for (String name : new String[]{"x", "y", "z"}) {
+            Author author = new Author();
+            author.name = name;
+            authors.add(author);
+        }
+
+        // the rows inserted by the trigger take row ids in the middle of a multi-row statement
+        long[] rowIds = db.prepareInsertIntoAuthor().executeAllInBatch(authors);
+
+        for (int i = 0; i < rowIds.length; i++) {
+            assertThat(rowIds[i], is(db.getConnection().rawQueryForLong("SELECT _rowid_ FROM `Author` WHERE `name` = ?",
+                    authors.get(i).name)));
+        }
+        assertThat(db.selectFromAuthor().count(), is(6));
+    }
+
     @Test
     public void inserterExecuteModelFactory() throws Exception {
         Inserter<Book> inserter = db.prepareInsertIntoBook();
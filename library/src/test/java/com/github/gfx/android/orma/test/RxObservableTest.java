@@ -17,10 +17,14 @@ package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.Inserter;
 import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.Schema;
 import com.github.gfx.android.orma.SingleAssociation;
 import com.github.gfx.android.orma.test.model.Book;
+import com.github.gfx.android.orma.test.model.Book_Schema;
+import com.github.gfx.android.orma.test.model.Book_Selector;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
 import com.github.gfx.android.orma.test.model.Publisher;
+import com.github.gfx.android.orma.test.model.PublisherSchema;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
 
 import org.junit.Before;
@@ -33,10 +37,15 @@ import android.support.test.runner.AndroidJUnit4;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import rx.Single;
+import rx.exceptions.OnErrorNotImplementedException;
+import rx.functions.Action1;
 import rx.functions.Func1;
 import rx.observers.TestSubscriber;
+import rx.plugins.RxJavaHooks;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -203,4 +212,165 @@ public class RxObservableTest {
         testSubscriber.assertReceivedOnNext(Collections.singletonList("today"));
         testSubscriber.assertError(AbortInMapException.class);
     }
+
+    @Test
+    public void changesAsObservable() throws Exception {
+        TestSubscriber<Set<Schema<?>>> testSubscriber = TestSubscriber.create();
+        db.getConnection().changesAsObservable().subscribe(testSubscriber);
+
+        db.updateBook().titleEq("today").content("coffee").execute();
+        db.deleteFromBook().titleEq("friday").execute();
+
+        testSubscriber.assertValueCount(2);
+        assertThat(testSubscriber.getOnNextEvents().get(0), contains((Schema<?>) Book_Schema.INSTANCE));
+        assertThat(testSubscriber.getOnNextEvents().get(1), contains((Schema<?>) Book_Schema.INSTANCE));
+    }
+
+    @Test
+    public void changesAsObservableInTransaction() throws Exception {
+        final TestSubscriber<Set<Schema<?>>> testSubscriber = TestSubscriber.create();
+        db.getConnection().changesAsObservable().subscribe(testSubscriber);
+
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                db.updatePublisher().name("baz").execute();
+                db.deleteFromBook().execute();
+                db.insertIntoPublisher(Publisher.create("qux", 2016, 1));
+
+                assertThat("not yet committed", testSubscriber.getOnNextEvents(), is(empty()));
+            }
+        });
+
+        testSubscriber.assertValueCount(1);
+        assertThat(testSubscriber.getOnNextEvents().get(0),
+                containsInAnyOrder((Schema<?>) Book_Schema.INSTANCE, PublisherSchema.INSTANCE));
+    }
+
+    @Test
+    public void changesAsObservableInRolledBackTransaction() throws Exception {
+        TestSubscriber<Set<Schema<?>>> testSubscriber = TestSubscriber.create();
+        db.getConnection().changesAsObservable().subscribe(testSubscriber);
+
+        try {
+            db.transactionSync(new Runnable() {
+                @Override
+                public void run() {
+                    db.deleteFromBook().execute();
+                    throw new RuntimeException("rollback");
+                }
+            });
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage(), is("rollback"));
+        }
+
+        testSubscriber.assertNoValues();
+        assertThat(db.selectFromBook().count(), is(2));
+    }
+
+    @Test
+    public void changesAsObservableWithThrowingSubscriber() throws Exception {
+        final List<Throwable> errors = new ArrayList<>();
+        RxJavaHooks.setOnError(new Action1<Throwable>() {
+            @Override
+            public void call(Throwable e) {
+                errors.add(e);
+            }
+        });
+        try {
+            // no onError handler, so the exception becomes OnErrorNotImplementedException
+            db.getConnection().changesAsObservable().subscribe(new Action1<Set<Schema<?>>>() {
+                @Override
+                public void call(Set<Schema<?>> schemas) {
+                    throw new IllegalStateException("subscriber");
+                }
+            });
+            TestSubscriber<Set<Schema<?>>> testSubscriber = TestSubscriber.create();
+            db.getConnection().changesAsObservable().subscribe(testSubscriber);
+
+            db.transactionSync(new Runnable() {
+                @Override
+                public void run() {
+                    db.deleteFromBook().titleEq("friday").execute();
+                }
+            });
+            db.insertIntoPublisher(Publisher.create("qux", 2016, 1));
+
+            assertThat(db.selectFromBook().count(), is(2));
+            assertThat(db.selectFromPublisher().count(), is(2));
+            testSubscriber.assertValueCount(2);
+            // the writer gets no exception, which is reported to the hook instead
+            assertThat(errors.isEmpty(), is(false));
+            assertThat(errors.get(errors.size() - 1), is(instanceOf(OnErrorNotImplementedException.class)));
+        } finally {
+            RxJavaHooks.reset();
+        }
+    }
+
+    @Test
+    public void observeList() throws Exception {
+        TestSubscriber<List<Book>> testSubscriber = TestSubscriber.create();
+        db.selectFromBook().orderByTitleAsc().observeList().subscribe(testSubscriber);
+
+        testSubscriber.assertValueCount(1);
+        assertThat(testSubscriber.getOnNextEvents().get(0).get(0).title, is("friday"));
+
+        // modifies nothing in the result
+        db.updateBook().titleEq("today").content("milk, banana").execute();
+        db.updateBook().titleEq("today").content("coffee").execute();
+
+        testSubscriber.awaitValueCount(2, 1, TimeUnit.SECONDS);
+        List<Book> books = testSubscriber.getOnNextEvents().get(1);
+        assertThat(books.get(1).content, is("coffee"));
+
+        testSubscriber.unsubscribe();
+        testSubscriber.assertValueCount(2);
+        testSubscriber.assertNoErrors();
+    }
+
+    @Test
+    public void observeListComparesValues() throws Exception {
+        TestSubscriber<List<Book>> testSubscriber = TestSubscriber.create();
+        db.selectFromBook().orderByTitleAsc().observeList().subscribe(testSubscriber);
+
+        // "Aa" and "BB" have the same hash code
+        db.updateBook().titleEq("today").content("Aa").execute();
+        testSubscriber.awaitValueCount(2, 1, TimeUnit.SECONDS);
+        db.updateBook().titleEq("today").content("BB").execute();
+        testSubscriber.awaitValueCount(3, 1, TimeUnit.SECONDS);
+
+        assertThat(testSubscriber.getOnNextEvents().get(2).get(1).content, is("BB"));
+        testSubscriber.unsubscribe();
+    }
+
+    @Test
+    public void observeListKeepsOrderingAndLimit() throws Exception {
+        Book_Selector selector = db.selectFromBook().orderByTitleAsc().limit(1);
+        TestSubscriber<List<Book>> testSubscriber = TestSubscriber.create();
+        selector.observeList().subscribe(testSubscriber);
+
+        // modifying the selector does not affect the live query
+        selector.titleEq("today");
+
+        db.updateBook().titleEq("friday").content("coffee").execute();
+        testSubscriber.awaitValueCount(2, 1, TimeUnit.SECONDS);
+
+        List<Book> books = testSubscriber.getOnNextEvents().get(1);
+        assertThat(books, hasSize(1));
+        assertThat(books.get(0).title, is("friday"));
+        assertThat(books.get(0).content, is("coffee"));
+        testSubscriber.unsubscribe();
+    }
+
+    @Test
+    public void observeCount() throws Exception {
+        TestSubscriber<Integer> testSubscriber = TestSubscriber.create();
+        db.relationOfBook().observeCount().subscribe(testSubscriber);
+
+        db.deleteFromBook().titleEq("friday").execute();
+        testSubscriber.awaitValueCount(2, 1, TimeUnit.SECONDS);
+
+        testSubscriber.assertValues(2, 1);
+        testSubscriber.unsubscribe();
+    }
 }
@@ -18,11 +18,14 @@ package com.github.gfx.android.orma.test.model;
 import com.google.gson.annotations.SerializedName;
 
 import com.github.gfx.android.orma.annotation.Column;
+import com.github.gfx.android.orma.annotation.HasMany;
 import com.github.gfx.android.orma.annotation.PrimaryKey;
 import com.github.gfx.android.orma.annotation.Table;
 
 import android.support.annotation.NonNull;
 
+import java.util.List;
+
 @Table(value = "publishers",
         schemaClassName = "PublisherSchema",
         relationClassName = "PublisherRelation",
@@ -45,6 +48,9 @@ public class Publisher {
     @Column("started_month")
     public int startedMonth;
 
+    @HasMany("publisher")
+    public List<Book> bookList;
+
     public Book_Selector books(OrmaDatabase orma) {
         return orma.selectFromBook().publisherEq(this);
     }
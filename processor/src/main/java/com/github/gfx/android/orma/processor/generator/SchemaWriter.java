@@ -21,6 +21,7 @@ import com.github.gfx.android.orma.processor.ProcessingContext;
 import com.github.gfx.android.orma.processor.exception.ProcessingException;
 import com.github.gfx.android.orma.processor.model.AssociationDefinition;
 import com.github.gfx.android.orma.processor.model.ColumnDefinition;
+import com.github.gfx.android.orma.processor.model.HasManyDefinition;
 import com.github.gfx.android.orma.processor.model.SchemaDefinition;
 import com.github.gfx.android.orma.processor.util.Annotations;
 import com.github.gfx.android.orma.processor.util.Strings;
@@ -75,6 +76,8 @@ public class SchemaWriter extends BaseWriter {
 
     private List<FieldSpecDefinition> columns = new ArrayList<>();
 
+    private List<FieldSpecDefinition> hasManyAssociations = new ArrayList<>();
+
     public SchemaWriter(ProcessingContext context, SchemaDefinition schema) {
         super(context);
         this.schema = schema;
@@ -128,6 +131,12 @@ public class SchemaWriter extends BaseWriter {
             fieldSpecs.add(column.fieldSpec);
         }
 
+        schema.getHasManyAssociations().forEach(hasMany -> {
+            FieldSpecDefinition fieldSpecDef = buildHasManyFieldSpec(hasMany);
+            hasManyAssociations.add(fieldSpecDef);
+            fieldSpecs.add(fieldSpecDef.fieldSpec);
+        });
+
         fieldSpecs.add(
                 FieldSpec.builder(Types.StringArray, $defaultResultColumns)
                         .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
@@ -243,11 +252,97 @@ public class SchemaWriter extends BaseWriter {
         }
         columnDefType.addMethod(getSerializedBuilder.build());
 
+        // ColumnDef#getFromCursor()
+        columnDefType.addMethod(MethodSpec.methodBuilder("getFromCursor")
+                .addAnnotation(Annotations.override())
+                .addAnnotation(c.nullable ? Annotations.nullable() : Annotations.nonNull())
+                .addModifiers(Modifier.PUBLIC)
+                .returns(c.getBoxType())
+                .addParameter(ParameterSpec.builder(Types.OrmaConnection, "conn")
+                        .addAnnotation(Annotations.nonNull())
+                        .build())
+                .addParameter(ParameterSpec.builder(Types.Cursor, "cursor")
+                        .addAnnotation(Annotations.nonNull())
+                        .build())
+                .addParameter(int.class, "index")
+                .addCode(buildGetFromCursor(c))
+                .build());
+
         return new FieldSpecDefinition(
                 FieldSpec.builder(c.getColumnDefType(), c.name).addModifiers(publicFinal).build(),
                 columnDefType.build());
     }
 
+    public FieldSpecDefinition buildHasManyFieldSpec(HasManyDefinition hasMany) {
+        SchemaDefinition childSchema = hasMany.getChildSchema();
+        ColumnDefinition foreignKey = hasMany.getForeignKey();
+        TypeName hasManyDefType = Types.getHasManyDef(schema.getModelClassName(), hasMany.getChildType());
+
+        TypeSpec.Builder hasManyDefTypeBuilder = TypeSpec.anonymousClassBuilder("this, $S", hasMany.getName());
+        hasManyDefTypeBuilder.superclass(hasManyDefType);
+
+        hasManyDefTypeBuilder.addMethod(MethodSpec.methodBuilder("getChildSchema")
+                .addAnnotations(Annotations.overrideAndNonNull())
+                .addModifiers(Modifier.PUBLIC)
+                .returns(Types.getSchema(hasMany.getChildType()))
+                .addStatement("return $L", childSchema.createSchemaInstanceExpr())
+                .build());
+
+        hasManyDefTypeBuilder.addMethod(MethodSpec.methodBuilder("getForeignKey")
+                .addAnnotations(Annotations.overrideAndNonNull())
+                .addModifiers(Modifier.PUBLIC)
+                .returns(Types.getColumnDef(hasMany.getChildType(), Types.WildcardType))
+                .addStatement("return $L.$L", childSchema.createSchemaInstanceExpr(), foreignKey.name)
+                .build());
+
+        hasManyDefTypeBuilder.addMethod(MethodSpec.methodBuilder("set")
+                .addAnnotation(Annotations.override())
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(ParameterSpec.builder(schema.getModelClassName(), "model")
+                        .addAnnotation(Annotations.nonNull())
+                        .build())
+                .addParameter(ParameterSpec.builder(Types.getList(hasMany.getChildType()), "children")
+                        .addAnnotation(Annotations.nonNull())
+                        .build())
+                .addStatement("model.$L = children", hasMany.getName())
+                .build());
+
+        return new FieldSpecDefinition(
+                FieldSpec.builder(hasManyDefType, hasMany.getName()).addModifiers(publicFinal).build(),
+                hasManyDefTypeBuilder.build());
+    }
+
+    private CodeBlock buildGetFromCursor(ColumnDefinition c) {
+        CodeBlock.Builder builder = CodeBlock.builder();
+        CodeBlock index = CodeBlock.of("index");
+
+        if (c.element == null) {
+            builder.addStatement("return $L", cursorGetter(c, index));
+        } else if (c.isDirectAssociation()) {
+            SchemaDefinition associatedSchema = c.getAssociatedSchema();
+            int consumingItemSize = associatedSchema.calculateConsumingColumnSize();
+            if (c.isNullableInJava()) {
+                // check the primary key is null or not
+                builder.addStatement("return cursor.isNull($L + $L) ? null : $L.newModelFromCursor(conn, cursor, $L + 1)",
+                        index, consumingItemSize, associatedSchema.createSchemaInstanceExpr(), index);
+            } else {
+                builder.addStatement("return $L.newModelFromCursor(conn, cursor, $L + 1)",
+                        associatedSchema.createSchemaInstanceExpr(), index);
+            }
+        } else if (c.isSingleAssociation()) {
+            AssociationDefinition r = c.getAssociation();
+            assert r != null;
+            builder.addStatement("return new $T<>(conn, $L, cursor.getLong($L))",
+                    r.getAssociationType(), c.getAssociatedSchema().createSchemaInstanceExpr(), index);
+        } else if (c.isNullableInSQL()) {
+            builder.addStatement("return cursor.isNull($L) ? null : $L", index,
+                    c.buildDeserializeExpr("conn", cursorGetter(c, index)));
+        } else {
+            builder.addStatement("return $L", c.buildDeserializeExpr("conn", cursorGetter(c, index)));
+        }
+        return builder.build();
+    }
+
     public CodeBlock buildColumnFlags(ColumnDefinition c) {
         CodeBlock.Builder builder = CodeBlock.builder();
         boolean some = false;
@@ -553,6 +648,29 @@ public class SchemaWriter extends BaseWriter {
                                         .addAnnotation(Annotations.nonNull())
                                         .build())
                         .addParameter(boolean.class, withoutAutoId)
+                        .addStatement("bindArgs(conn, statement, model, $L, 0)", withoutAutoId)
+                        .build()
+        );
+
+        methodSpecs.add(
+                MethodSpec.methodBuilder("bindArgs")
+                        .addAnnotation(Annotations.override())
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.VOID)
+                        .addParameter(
+                                ParameterSpec.builder(Types.OrmaConnection, "conn")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addParameter(
+                                ParameterSpec.builder(Types.SQLiteStatement, "statement")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addParameter(
+                                ParameterSpec.builder(schema.getModelClassName(), "model")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addParameter(boolean.class, withoutAutoId)
+                        .addParameter(int.class, "offset")
                         .addCode(buildBindArgs())
                         .build()
         );
@@ -575,6 +693,22 @@ public class SchemaWriter extends BaseWriter {
                         .build()
         );
 
+        methodSpecs.add(
+                MethodSpec.methodBuilder("getChangeTracker")
+                        .addAnnotation(Annotations.override())
+                        .addAnnotation(Annotations.nullable())
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(Types.ChangeTracker)
+                        .addParameter(
+                                ParameterSpec.builder(schema.getModelClassName(), "model")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addStatement("return $L", schema.getChangeTrackerElement()
+                                .map(element -> CodeBlock.of("model.$L", element.getSimpleName()))
+                                .orElseGet(() -> CodeBlock.of("null")))
+                        .build()
+        );
+
         return methodSpecs;
     }
 
@@ -587,6 +721,9 @@ public class SchemaWriter extends BaseWriter {
             }
             code.addStatement("this.$N = $L", column.fieldSpec, column.initializer);
         }
+        for (FieldSpecDefinition hasMany : hasManyAssociations) {
+            code.addStatement("this.$N = $L", hasMany.fieldSpec, hasMany.initializer);
+        }
         return code.build();
     }
 
@@ -649,7 +786,7 @@ public class SchemaWriter extends BaseWriter {
 
         List<ColumnDefinition> columns = schema.getColumns();
         for (int i = 0; i < columns.size(); i++) {
-            int n = i + 1; // bind index starts 1
+            CodeBlock n = CodeBlock.of("offset + $L", i + 1); // bind index starts 1
             ColumnDefinition c = columns.get(i);
 
             if (c.isNullableInJava()) {
@@ -753,11 +890,13 @@ public class SchemaWriter extends BaseWriter {
 
             block.add(buildPopulateValuesIntoCursor(column -> CodeBlock.of("$T ", column.getType())));
 
-            block.addStatement("return new $T($L)", schema.getModelClassName(),
+            block.addStatement("$T model = new $T($L)", schema.getModelClassName(), schema.getModelClassName(),
                     constructorElement.getParameters()
                             .stream()
                             .map(this::extractColumnNameFromParameterElement)
                             .collect(Collectors.joining(", ")));
+            block.add(buildResetChangeTracker());
+            block.addStatement("return model");
 
             return block.build();
         }).orElseGet(() -> {
@@ -765,12 +904,21 @@ public class SchemaWriter extends BaseWriter {
 
             block.addStatement("$T model = new $T()", schema.getModelClassName(), schema.getModelClassName());
             block.add(buildPopulateValuesIntoCursor(column -> CodeBlock.of("model.")));
+            block.add(buildResetChangeTracker());
             block.addStatement("return model");
 
             return block.build();
         });
     }
 
+    private CodeBlock buildResetChangeTracker() {
+        return schema.getChangeTrackerElement()
+                .map(element -> CodeBlock.builder()
+                        .addStatement("model.$L.reset(this, model)", element.getSimpleName())
+                        .build())
+                .orElseGet(() -> CodeBlock.of(""));
+    }
+
     private String extractColumnNameFromParameterElement(VariableElement parameterElement) {
         Setter setter = parameterElement.getAnnotation(Setter.class);
         if (setter != null && !Strings.isEmpty(setter.value())) {
@@ -22,9 +22,11 @@ import com.github.gfx.android.orma.processor.model.ColumnDefinition;
 import com.github.gfx.android.orma.processor.model.SchemaDefinition;
 import com.github.gfx.android.orma.processor.util.Annotations;
 import com.github.gfx.android.orma.processor.util.Types;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
 import java.util.ArrayList;
@@ -92,8 +94,10 @@ public class UpdaterWriter extends BaseWriter {
                 .addStatement("return schema")
                 .build());
 
+        List<ColumnDefinition> columns = schema.getColumns();
         schema.getColumnsWithoutAutoId().forEach(column -> {
             AssociationDefinition r = column.getAssociation();
+            int columnIndex = columns.indexOf(column); // the index in Schema#getColumns()
 
             if (r == null) {
                 String paramName = column.name;
@@ -108,12 +112,12 @@ public class UpdaterWriter extends BaseWriter {
 
                 if (column.isNullableInJava()) {
                     methodSpecBuilder.beginControlFlow("if ($L == null)", paramName)
-                            .addStatement("contents.putNull($S)", column.getEscapedColumnName(false))
+                            .addStatement("putNull($L)", columnIndex)
                             .endControlFlow()
                             .beginControlFlow("else");
                 }
-                methodSpecBuilder.addStatement("contents.put($S, $L)", column.getEscapedColumnName(false),
-                        column.buildSerializeExpr("conn", paramName));
+                methodSpecBuilder.addStatement("$L", buildPutExpr(columnIndex, column.getSerializedType(),
+                        column.buildSerializeExpr("conn", paramName), column));
                 if (column.isNullableInJava()) {
                     methodSpecBuilder.endControlFlow();
                 }
@@ -133,8 +137,7 @@ public class UpdaterWriter extends BaseWriter {
                                                     .addAnnotation(Annotations.nonNull())
                                                     .build()
                                     )
-                                    .addStatement("contents.put($S, $L.getId())",
-                                            column.getEscapedColumnName(false), column.name + "Reference")
+                                    .addStatement("putLong($L, $L.getId())", columnIndex, column.name + "Reference")
                                     .addStatement("return this")
                                     .build()
                     );
@@ -161,9 +164,8 @@ public class UpdaterWriter extends BaseWriter {
                                                 .addAnnotations(column.nullabilityAnnotations())
                                                 .build()
                                 )
-                                .addStatement("contents.put($S, $L)",
-                                        column.getEscapedColumnName(false),
-                                        primaryKey.buildGetColumnExpr(column.name))
+                                .addStatement("$L", buildPutExpr(columnIndex, primaryKey.getSerializedType(),
+                                        primaryKey.buildSerializedColumnExpr("conn", column.name), column))
                                 .addStatement("return this")
                                 .build()
                 );
@@ -174,4 +176,22 @@ public class UpdaterWriter extends BaseWriter {
 
         return methodSpecs;
     }
+
+    // see SchemaWriter#buildBindArgs() for the mapping from Java types to SQLite types
+    private CodeBlock buildPutExpr(int columnIndex, TypeName serializedType, CodeBlock valueExpr,
+            ColumnDefinition column) {
+        if (serializedType.equals(TypeName.BOOLEAN)) {
+            return CodeBlock.of("putLong($L, $L ? 1 : 0)", columnIndex, valueExpr);
+        } else if (Types.looksLikeIntegerType(serializedType)) {
+            return CodeBlock.of("putLong($L, $L)", columnIndex, valueExpr);
+        } else if (Types.looksLikeFloatType(serializedType)) {
+            return CodeBlock.of("putDouble($L, $L)", columnIndex, valueExpr);
+        } else if (serializedType.equals(Types.ByteArray)) {
+            return CodeBlock.of("putBlob($L, $L)", columnIndex, valueExpr);
+        } else if (serializedType.equals(Types.String)) {
+            return CodeBlock.of("putString($L, $L)", columnIndex, valueExpr);
+        } else {
+            throw new ProcessingException("No storage method found for " + serializedType, column.element);
+        }
+    }
 }
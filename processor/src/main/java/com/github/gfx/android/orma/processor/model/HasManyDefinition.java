@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.processor.model;
+
+import com.github.gfx.android.orma.annotation.HasMany;
+import com.github.gfx.android.orma.processor.ProcessingContext;
+import com.github.gfx.android.orma.processor.exception.ProcessingException;
+import com.github.gfx.android.orma.processor.util.Types;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+
+/**
+ * A has-many association declared by {@code @HasMany}, which is not a column.
+ */
+public class HasManyDefinition {
+
+    final ProcessingContext context;
+
+    final SchemaDefinition schema;
+
+    final VariableElement element;
+
+    final String name;
+
+    final String foreignKeyName;
+
+    final TypeName childType;
+
+    public HasManyDefinition(SchemaDefinition schema, VariableElement element) {
+        this.context = schema.context;
+        this.schema = schema;
+        this.element = element;
+        this.name = element.getSimpleName().toString();
+        this.foreignKeyName = element.getAnnotation(HasMany.class).value();
+
+        TypeName type = TypeName.get(element.asType());
+        if (!(type instanceof ParameterizedTypeName) || !((ParameterizedTypeName) type).rawType.equals(Types.List)) {
+            throw new ProcessingException("@HasMany field must be java.util.List<T>", element);
+        }
+        if (element.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new ProcessingException("@HasMany field must not be private", element);
+        }
+        this.childType = ((ParameterizedTypeName) type).typeArguments.get(0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TypeName getChildType() {
+        return childType;
+    }
+
+    public VariableElement getElement() {
+        return element;
+    }
+
+    /**
+     * Resolved lazily because the child schema might not be defined yet when this is created.
+     *
+     * @return The schema of the children
+     */
+    public SchemaDefinition getChildSchema() {
+        SchemaDefinition childSchema = context.getSchemaDef(childType);
+        if (childSchema == null) {
+            throw new ProcessingException("@HasMany requires List<T> where T is an Orma model: " + childType, element);
+        }
+        return childSchema;
+    }
+
+    /**
+     * @return The column of the child schema which refers to the model
+     */
+    public ColumnDefinition getForeignKey() {
+        SchemaDefinition childSchema = getChildSchema();
+        for (ColumnDefinition column : childSchema.getColumns()) {
+            if (!column.name.equals(foreignKeyName) && !column.columnName.equals(foreignKeyName)) {
+                continue;
+            }
+            AssociationDefinition association = column.getAssociation();
+            if (association == null || !association.getModelType().equals(schema.getModelClassName())) {
+                throw new ProcessingException("@HasMany(\"" + foreignKeyName + "\") must refer to a column of "
+                        + "SingleAssociation<" + schema.getModelClassName().simpleName() + "> or "
+                        + schema.getModelClassName().simpleName() + " in " + childType, element);
+            }
+            return column;
+        }
+        throw new ProcessingException("No column named \"" + foreignKeyName + "\" in " + childType, element);
+    }
+}
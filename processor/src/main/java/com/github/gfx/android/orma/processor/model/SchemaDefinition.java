@@ -17,13 +17,16 @@ package com.github.gfx.android.orma.processor.model;
 
 import com.github.gfx.android.orma.annotation.Column;
 import com.github.gfx.android.orma.annotation.Getter;
+import com.github.gfx.android.orma.annotation.HasMany;
 import com.github.gfx.android.orma.annotation.PrimaryKey;
 import com.github.gfx.android.orma.annotation.Setter;
 import com.github.gfx.android.orma.annotation.Table;
 import com.github.gfx.android.orma.processor.ProcessingContext;
 import com.github.gfx.android.orma.processor.util.Strings;
+import com.github.gfx.android.orma.processor.util.Types;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -37,6 +40,7 @@ import java.util.stream.Collectors;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeKind;
@@ -68,6 +72,11 @@ public class SchemaDefinition {
 
     final ColumnDefinition primaryKey;
 
+    final List<HasManyDefinition> hasManyAssociations;
+
+    @Nullable
+    final VariableElement changeTrackerElement; // null if the model has no ChangeTracker field
+
     @Nullable
     final ExecutableElement constructorElement; // null if it has a default constructor
 
@@ -105,6 +114,10 @@ public class SchemaDefinition {
 
         this.primaryKey = findPrimaryKey(columns);
 
+        this.hasManyAssociations = collectHasManyAssociations(typeElement);
+
+        this.changeTrackerElement = findChangeTracker(typeElement);
+
         SchemaValidator.validate(context, this);
     }
 
@@ -235,6 +248,51 @@ public class SchemaDefinition {
         return columns;
     }
 
+    List<HasManyDefinition> collectHasManyAssociations(@NonNull TypeElement typeElement) {
+        List<HasManyDefinition> hasManyAssociations = new ArrayList<>();
+        TypeMirror superclass = typeElement.getSuperclass();
+        if (!superclass.toString().equals(Object.class.getCanonicalName())) {
+            TypeElement superclassElement = context.getTypeElement(superclass);
+            hasManyAssociations.addAll(collectHasManyAssociations(superclassElement));
+        }
+
+        typeElement.getEnclosedElements()
+                .forEach(element -> {
+                    if (element instanceof VariableElement && element.getAnnotation(HasMany.class) != null) {
+                        if (element.getAnnotation(Column.class) != null
+                                || element.getAnnotation(PrimaryKey.class) != null) {
+                            context.addError("@HasMany field cannot be a column", element);
+                            return;
+                        }
+                        hasManyAssociations.add(new HasManyDefinition(this, (VariableElement) element));
+                    }
+                });
+        return hasManyAssociations;
+    }
+
+    @Nullable
+    VariableElement findChangeTracker(@NonNull TypeElement typeElement) {
+        VariableElement changeTracker = null;
+        TypeMirror superclass = typeElement.getSuperclass();
+        if (!superclass.toString().equals(Object.class.getCanonicalName())) {
+            changeTracker = findChangeTracker(context.getTypeElement(superclass));
+        }
+
+        for (Element element : typeElement.getEnclosedElements()) {
+            if (!(element instanceof VariableElement) || !TypeName.get(element.asType()).equals(Types.ChangeTracker)) {
+                continue;
+            }
+            if (changeTracker != null) {
+                context.addError("Too many ChangeTracker fields", element);
+            } else if (element.getModifiers().contains(Modifier.PRIVATE)
+                    || !element.getModifiers().contains(Modifier.FINAL)) {
+                context.addError("ChangeTracker field must be non-private and final", element);
+            }
+            changeTracker = (VariableElement) element;
+        }
+        return changeTracker;
+    }
+
     @SafeVarargs
     private final <K, V> V getBestMatched(Map<K, List<V>> map, K... keys) {
         for (K key : keys) {
@@ -358,6 +416,14 @@ public class SchemaDefinition {
         return columns.stream().filter(column -> column.columnName.contentEquals(name)).findFirst();
     }
 
+    public List<HasManyDefinition> getHasManyAssociations() {
+        return hasManyAssociations;
+    }
+
+    public Optional<VariableElement> getChangeTrackerElement() {
+        return Optional.ofNullable(changeTrackerElement);
+    }
+
     public Optional<ColumnDefinition> getPrimaryKey() {
         return Optional.ofNullable(primaryKey);
     }
@@ -93,6 +93,10 @@ public class Types {
 
     public static final ClassName AssociationDef = ClassName.get(ormaPackageName, "AssociationDef");
 
+    public static final ClassName HasManyDef = ClassName.get(ormaPackageName, "HasManyDef");
+
+    public static final ClassName ChangeTracker = ClassName.get(ormaPackageName, "ChangeTracker");
+
     public static final ClassName Relation = ClassName.get(ormaPackageName, "Relation");
 
     public static final ClassName Selector = ClassName.get(ormaPackageName, "Selector");
@@ -151,6 +155,10 @@ public class Types {
         return ParameterizedTypeName.get(AssociationDef, modelType, typeName, schemaType);
     }
 
+    public static ParameterizedTypeName getHasManyDef(ClassName modelType, TypeName childType) {
+        return ParameterizedTypeName.get(HasManyDef, modelType, childType);
+    }
+
     public static ParameterizedTypeName getColumnDefList(TypeName schemaType) {
         return ParameterizedTypeName.get(List, getColumnDef(schemaType, WildcardType));
     }